@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/** Iterates over a commit and its ancestors, newest first. A background
+ * thread reads the commits ahead of the caller, following each one's
+ * parent as soon as it is read, and hands them over through a bounded
+ * queue; so the caller can start on the first commits while later ones
+ * are still being read, and never waits on one read to learn which file
+ * to read next. Only the header of each ancestor is read (see
+ * Commit.readHeader). The thread waits while the queue is full, and is
+ * stopped when the walk is closed.
+ * @author Ryan Gomes
+ */
+public class Ancestry implements Iterator<Commit>, AutoCloseable {
+
+    /** The history of START, read from COMMITSDIR.
+     * @param commitsDir the commits directory
+     * @param start the newest commit */
+    public Ancestry(File commitsDir, Commit start) {
+        this.pending = start;
+        this.reader = new Thread(() -> readAll(commitsDir, start.getParent()),
+                "gitlet-ancestry");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null && !ended) {
+            Optional<Commit> next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                throw new GitletException("Interrupted reading history.");
+            }
+            if (next.isPresent()) {
+                pending = next.get();
+            } else {
+                ended = true;
+                if (error instanceof Error) {
+                    throw (Error) error;
+                } else if (error != null) {
+                    throw (RuntimeException) error;
+                }
+            }
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Commit result = pending;
+        pending = null;
+        return result;
+    }
+
+    /** Stops reading ahead. */
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+
+    /** Reads the commit with the ID PARENT and each of its ancestors into
+     * the queue, followed by an empty marker. Whatever stops the reader,
+     * short of the walk being closed, the marker is still queued, with
+     * the error kept for the caller, so the caller never waits forever.
+     * @param commitsDir the commits directory
+     * @param parent ID of the first commit to read, or null */
+    private void readAll(File commitsDir, String parent) {
+        boolean closed = false;
+        try {
+            while (parent != null) {
+                Commit commit = Commit.readHeader(Utils.join(commitsDir,
+                        parent));
+                queue.put(Optional.of(commit));
+                parent = commit.getParent();
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+        } catch (RuntimeException | Error e) {
+            error = e;
+        } finally {
+            if (!closed) {
+                try {
+                    queue.put(Optional.empty());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Number of commits read ahead of the caller. */
+    private static final int DEPTH = 64;
+
+    /** Commits read ahead, then an empty marker at the end. */
+    private final ArrayBlockingQueue<Optional<Commit>> queue =
+            new ArrayBlockingQueue<>(DEPTH);
+
+    /** The thread reading ahead. */
+    private final Thread reader;
+
+    /** The next commit to return, once taken from the queue. */
+    private Commit pending;
+
+    /** Whether the end marker has been taken from the queue. */
+    private boolean ended;
+
+    /** The error the reader stopped on, if any: a RuntimeException or an
+     * Error. */
+    private volatile Throwable error;
+}
@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** Computes line-level attribution for a file by walking backwards along
+ * the first-parent history and diffing each version of the file against
+ * the one before it. Only the attribution that is returned is cached, by
+ * (file name, commit ID), so that a later blame only has to look at the
+ * commits made since the last commit it was blamed at. It is not keyed
+ * by blob, since the same contents reached by different histories are
+ * attributed differently. It is stored as
+ * the distinct commit IDs followed by runs of lines, each a count and an
+ * index into those IDs, since neighbouring lines mostly share a commit.
+ * @author Ryan Gomes
+ */
+public class Blame {
+
+    /** A blame over the given directories.
+     * @param commits the commits directory
+     * @param blobs the blob directory
+     * @param cache the directory holding cached annotations */
+    public Blame(File commits, File blobs, File cache) {
+        commitsDir = commits;
+        blobDir = blobs;
+        cacheDir = cache;
+        if (!cacheDir.exists()) {
+            cacheDir.mkdir();
+        }
+    }
+
+    /** Returns the ID of the commit that last changed each line of the
+     * file as it exists in the given commit.
+     * @param head the commit to start from
+     * @param fileName name of the file */
+    public String[] annotate(Commit head, String fileName) {
+        ArrayList<Commit> chain = new ArrayList<>();
+        String[] annotation = null;
+        String prevBlob = null;
+        Commit commit = head;
+        while (commit != null && commit.getBlobs().contains(fileName)) {
+            File cached = cacheFile(fileName, commit.compID());
+            if (cached.exists()) {
+                annotation = readCache(cached);
+                if (annotation != null) {
+                    prevBlob = commit.getBlobs().get(fileName);
+                    break;
+                }
+                cached.delete();
+            }
+            chain.add(commit);
+            commit = parentOf(commit);
+        }
+
+        String[] prevLines = prevBlob == null ? new String[0] : lines(prevBlob);
+        for (int i = chain.size() - 1; i >= 0; i -= 1) {
+            Commit next = chain.get(i);
+            String blob = next.getBlobs().get(fileName);
+            if (blob.equals(prevBlob)) {
+                continue;
+            }
+            String[] nextLines = lines(blob);
+            int[] match = Diff.match(prevLines, nextLines);
+            String[] nextAnnotation = new String[nextLines.length];
+            String id = next.compID();
+            for (int j = 0; j < nextLines.length; j += 1) {
+                nextAnnotation[j] = match[j] < 0 ? id : annotation[match[j]];
+            }
+            annotation = nextAnnotation;
+            prevLines = nextLines;
+            prevBlob = blob;
+        }
+        if (!chain.isEmpty()) {
+            writeCache(cacheFile(fileName, head.compID()), annotation);
+        }
+        return annotation;
+    }
+
+    /** Prints every line of the file as it exists in the given commit,
+     * prefixed with the abbreviated ID and date of the commit that last
+     * changed it.
+     * @param head the commit to start from
+     * @param fileName name of the file */
+    public void print(Commit head, String fileName) {
+        String[] annotation = annotate(head, fileName);
+        String[] text = lines(head.getBlobs().get(fileName));
+        HashMap<String, Commit> commits = new HashMap<>();
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < text.length; i += 1) {
+            Commit commit = commits.get(annotation[i]);
+            if (commit == null) {
+                File file = Utils.join(commitsDir, annotation[i]);
+                commit = Commit.readHeader(file);
+                commits.put(annotation[i], commit);
+            }
+            out.append(annotation[i], 0, SHORT_ID).append(" (")
+                    .append(commit.getTimestamp()).append(' ')
+                    .append(i + 1).append(") ").append(text[i]).append('\n');
+        }
+        System.out.print(out);
+    }
+
+    /** Returns the parent of the commit, or null for the initial commit.
+     * @param commit a commit */
+    private Commit parentOf(Commit commit) {
+        if (commit.getParent() == null) {
+            return null;
+        }
+        File parent = Utils.join(commitsDir, commit.getParent());
+        return Commit.read(parent);
+    }
+
+    /** Returns the lines of the blob with the given ID.
+     * @param blobID sha1 ID of the blob */
+    private String[] lines(String blobID) {
+        String text = new String(Blob.read(Utils.join(blobDir, blobID)),
+                StandardCharsets.UTF_8);
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.split("\n", -1);
+    }
+
+    /** Returns the cache file for a file as of a commit.
+     * @param fileName name of the file
+     * @param commitID sha1 ID of the commit */
+    private File cacheFile(String fileName, String commitID) {
+        return Utils.join(cacheDir, Utils.sha1(fileName, commitID));
+    }
+
+    /** Saves ANNOTATION to FILE as the distinct commit IDs it names
+     * followed by its runs of lines.
+     * @param file the cache file
+     * @param annotation the commit ID of each line */
+    private static void writeCache(File file, String[] annotation) {
+        HashMap<String, Integer> indexes = new HashMap<>();
+        ArrayList<String> ids = new ArrayList<>();
+        ArrayList<int[]> runs = new ArrayList<>();
+        for (int i = 0; i < annotation.length; i += 1) {
+            Integer index = indexes.get(annotation[i]);
+            if (index == null) {
+                index = ids.size();
+                indexes.put(annotation[i], index);
+                ids.add(annotation[i]);
+            }
+            int[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last[1] == index) {
+                last[0] += 1;
+            } else {
+                runs.add(new int[] {1, index});
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(annotation.length);
+            out.writeInt(ids.size());
+            for (String id: ids) {
+                Codec.writeID(out, id);
+            }
+            out.writeInt(runs.size());
+            for (int[] run: runs) {
+                out.writeInt(run[0]);
+                out.writeInt(run[1]);
+            }
+        } catch (IOException e) {
+            throw new GitletException("Internal error encoding blame.");
+        }
+        Utils.writeContents(file, bytes.toByteArray());
+    }
+
+    /** Returns the annotation saved in FILE, or null if it cannot be
+     * read, as with a cache file written by an older version of Gitlet.
+     * @param file the cache file */
+    private static String[] readCache(File file) {
+        byte[] stored = Utils.readContents(file);
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(stored))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            String[] annotation = new String[in.readInt()];
+            String[] ids = new String[in.readInt()];
+            for (int i = 0; i < ids.length; i += 1) {
+                ids[i] = Codec.readID(in);
+            }
+            int runs = in.readInt();
+            int line = 0;
+            for (int i = 0; i < runs; i += 1) {
+                int length = in.readInt();
+                String id = ids[in.readInt()];
+                for (int j = 0; j < length; j += 1) {
+                    annotation[line] = id;
+                    line += 1;
+                }
+            }
+            return line == annotation.length ? annotation : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Marks the start of a cached annotation. */
+    private static final int MAGIC = 0x474c4100;
+
+    /** Version of the cached annotation format. */
+    private static final byte VERSION = 1;
+
+    /** Number of characters of a commit ID that are printed. */
+    private static final int SHORT_ID = 8;
+
+    /** Commits Directory. */
+    private File commitsDir;
+
+    /** Blob Directory. */
+    private File blobDir;
+
+    /** Cached annotations directory. */
+    private File cacheDir;
+}
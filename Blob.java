@@ -1,10 +1,24 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
-/** Represents a blob.
+/** Represents a blob. A blob is stored in the blob directory as the raw
+ * contents of the file, under its sha1 ID, so that it can be copied into
+ * the working directory without passing through the Java heap. Blobs
+ * written by older versions of Gitlet are serialized Blob objects; these
+ * are still read, and told apart by their contents not hashing to their
+ * name.
  * @author Ryan Gomes
  */
 public class Blob implements Serializable {
@@ -33,6 +47,97 @@ public class Blob implements Serializable {
         return blobContents;
     }
 
+    /** Stores the blob in the given blob directory, unless it is
+     * already there. The blob is written to a temporary file beside the
+     * blob directory first and then moved into place, so it never
+     * appears partly written, even when several threads store the same
+     * blob.
+     * @param blobDir the blob directory */
+    public void save(File blobDir) {
+        File file = Utils.join(blobDir, shaID);
+        if (file.exists()) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(
+                    blobDir.getParentFile().toPath(), shaID, ".tmp");
+            Files.write(temp, blobContents);
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new GitletException("Cannot store blob " + shaID + ".");
+        }
+    }
+
+    /** Returns the contents of the blob stored in FILE.
+     * @param file a file in the blob directory */
+    public static byte[] read(File file) {
+        return contents(Utils.readContents(file), file.getName());
+    }
+
+    /** Returns the contents of a blob given the bytes it is stored as.
+     * @param stored the stored bytes
+     * @param shaID sha1 ID of the blob */
+    public static byte[] contents(byte[] stored, String shaID) {
+        if (!Codec.isSerialized(stored) || Utils.sha1(stored).equals(shaID)) {
+            return stored;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(stored))) {
+            return ((Blob) in.readObject()).blobContents;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new GitletException("Corrupt blob " + shaID + ".");
+        }
+    }
+
+    /** Writes the contents of the blob stored in FILE to DEST, replacing
+     * whatever DEST held and creating its directory if needed. The bytes
+     * are moved by the file system, with FileChannel.transferTo, rather
+     * than read into memory.
+     * @param file a file in the blob directory
+     * @param dest the file to write
+     * @throws IOException */
+    public static void checkout(File file, File dest) throws IOException {
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        if (isSerialized(file)) {
+            Utils.writeContents(dest, read(file));
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /** Returns whether FILE holds a blob written by an older version of
+     * Gitlet, as a serialized Blob object.
+     * @param file a file in the blob directory
+     * @throws IOException */
+    private static boolean isSerialized(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            if (!Codec.isSerialized(in.readNBytes(HEADER))) {
+                return false;
+            }
+        }
+        return !Utils.sha1(Utils.readContents(file)).equals(file.getName());
+    }
+
+    /** Serialization version of blobs written by older versions of Gitlet,
+     * which must stay readable. */
+    private static final long serialVersionUID = 29610657094658348L;
+
+    /** Number of bytes needed to tell a serialized blob apart. */
+    private static final int HEADER = 4;
+
     /** The sha1 serialization ID of the blob. */
     private String shaID;
 
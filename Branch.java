@@ -1,8 +1,18 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.LinkedList;
 
-/** Represents a branch.
+/** Represents a branch. A branch is stored as its name and the raw ID of
+ * its head commit. Branches written by older versions of Gitlet are
+ * serialized Branch objects that also hold their commits; these are still
+ * read, which is why Branch remains a list.
  * @author Ryan Gomes
  */
 public class Branch extends LinkedList<Commit> {
@@ -28,6 +38,61 @@ public class Branch extends LinkedList<Commit> {
         return branchName;
     }
 
+    /** Saves the branch to FILE.
+     * @param file the file to write */
+    public void write(File file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Codec.writeString(out, branchName);
+            Codec.writeID(out, head.compID());
+        } catch (IOException e) {
+            throw new GitletException("Internal error encoding branch.");
+        }
+        Utils.writeContents(file, bytes.toByteArray());
+    }
+
+    /** Returns the branch stored in FILE, with its head commit read from
+     * the given commits directory.
+     * @param file the file to read
+     * @param commitsDir the commits directory */
+    public static Branch read(File file, File commitsDir) {
+        byte[] stored = Utils.readContents(file);
+        try {
+            if (Codec.isSerialized(stored)) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(stored))) {
+                    Branch branch = (Branch) in.readObject();
+                    branch.clear();
+                    return branch;
+                }
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(stored));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("unknown branch format");
+            }
+            Branch branch = new Branch(Codec.readString(in));
+            branch.setHead(Commit.read(Utils.join(commitsDir,
+                    Codec.readID(in))));
+            return branch;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new GitletException("Corrupt branch " + file.getName()
+                    + ".");
+        }
+    }
+
+    /** Serialization version of branches written by older versions of
+     * Gitlet, which must stay readable. */
+    private static final long serialVersionUID = 2854668593906091904L;
+
+    /** Marks the start of a stored branch. */
+    private static final int MAGIC = 0x474c5200;
+
+    /** Version of the stored branch format. */
+    private static final byte VERSION = 1;
+
     /** The commit object for the head pointer. */
     private Commit head;
 
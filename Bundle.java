@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** A single-file, compressed archive of the commits and blobs reachable
+ * from a set of branches. A bundle holds its version, an optional base
+ * commit, the branch heads it contains, a pack of objects and finally
+ * the SHA-1 of everything before it. When a base commit is given, only
+ * the history after the base is included, and the receiving repository
+ * must already have the base commit.
+ * @author Ryan Gomes
+ */
+public class Bundle {
+
+    /** A bundle read from or written to the given object store.
+     * @param commits the commits directory
+     * @param blobs the blob directory */
+    public Bundle(File commits, File blobs) {
+        commitsDir = commits;
+        blobDir = blobs;
+    }
+
+    /** Writes a bundle of the given branch heads to FILE. If BASE is not
+     * null, the history up to and including BASE is left out.
+     * @param file the bundle file
+     * @param heads the branch heads, by branch name
+     * @param base the base commit, or null
+     * @throws IOException */
+    public void create(File file, Map<String, Commit> heads, Commit base)
+            throws IOException {
+        ArrayList<String> commits = new ArrayList<>();
+        LinkedHashSet<String> seen = new LinkedHashSet<>();
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        String baseID = base == null ? null : base.compID();
+        for (Commit head: heads.values()) {
+            ArrayList<String> chain = new ArrayList<>();
+            Commit commit = head;
+            while (commit != null && !commit.compID().equals(baseID)
+                    && !seen.contains(commit.compID())) {
+                chain.add(commit.compID());
+                Commit parent = null;
+                if (commit.getParent() != null) {
+                    parent = Commit.read(Utils.join(commitsDir,
+                            commit.getParent()));
+                }
+                Tree parentTree = parent == null ? Tree.EMPTY
+                        : parent.getBlobs();
+                for (TreeDiff.Change change: new TreeDiff(parentTree,
+                        commit.getBlobs())) {
+                    if (change.getNewID() != null) {
+                        blobs.add(change.getNewID());
+                    }
+                }
+                commit = parent;
+            }
+            Collections.reverse(chain);
+            commits.addAll(chain);
+            seen.addAll(chain);
+        }
+        if (base != null) {
+            blobs.removeAll(base.getBlobs().blobIDs());
+        }
+
+        MessageDigest digest = sha1();
+        try (DataOutputStream out = new DataOutputStream(
+                new DigestOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(new FileOutputStream(file),
+                                BUFFER), BUFFER), digest))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(baseID == null ? "" : baseID);
+            out.writeInt(heads.size());
+            for (Map.Entry<String, Commit> head: heads.entrySet()) {
+                out.writeUTF(head.getKey());
+                out.writeUTF(head.getValue().compID());
+            }
+            Pack.write(out, commitsDir, blobDir, commits, blobs);
+            out.write(digest.digest());
+        }
+    }
+
+    /** Reads the bundle in FILE into the object store, verifying every
+     * object as it is streamed in, and returns the IDs of the branch heads
+     * it contains, by branch name. Exits if the repository does not have
+     * the bundle's base commit or the bundle's checksum does not match.
+     * @param file the bundle file
+     * @throws IOException */
+    public Map<String, String> unbundle(File file) throws IOException {
+        LinkedHashMap<String, String> heads = new LinkedHashMap<>();
+        MessageDigest digest = sha1();
+        try (DigestInputStream digestIn = new DigestInputStream(
+                new BufferedInputStream(new GZIPInputStream(
+                        new FileInputStream(file), BUFFER), BUFFER), digest);
+             DataInputStream in = new DataInputStream(digestIn)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.println("Not a gitlet bundle.");
+                System.exit(0);
+            }
+            String baseID = in.readUTF();
+            if (!baseID.isEmpty()
+                    && !Utils.join(commitsDir, baseID).exists()) {
+                System.out.println("Bundle requires commit " + baseID + ".");
+                System.exit(0);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                heads.put(name, in.readUTF());
+            }
+            Pack.read(in, commitsDir, blobDir);
+            digestIn.on(false);
+            byte[] trailer = new byte[digest.getDigestLength()];
+            in.readFully(trailer);
+            if (!Arrays.equals(trailer, digest.digest())) {
+                System.out.println("Bundle checksum does not match.");
+                System.exit(0);
+            }
+        }
+        return heads;
+    }
+
+    /** Returns a new SHA-1 digest. */
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GitletException("System does not support SHA-1");
+        }
+    }
+
+    /** Marks the start of a bundle. */
+    private static final int MAGIC = 0x474c4231;
+
+    /** Version of the bundle format. */
+    private static final int VERSION = 1;
+
+    /** Size of the stream buffers. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Commits Directory. */
+    private File commitsDir;
+
+    /** Blob Directory. */
+    private File blobDir;
+}
@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** Helpers shared by the binary formats of Gitlet's stored objects.
+ * Object IDs are stored as their raw 20 bytes rather than 40 hex digits,
+ * and strings as a length followed by their UTF-8 bytes.
+ * @author Ryan Gomes
+ */
+public class Codec {
+
+    /** Writes the raw bytes of a sha1 ID.
+     * @param out the stream to write to
+     * @param id a sha1 ID in hex
+     * @throws IOException */
+    public static void writeID(DataOutput out, String id) throws IOException {
+        for (int i = 0; i < ID_LENGTH; i += 1) {
+            out.writeByte(Character.digit(id.charAt(2 * i), HEX) << 4
+                    | Character.digit(id.charAt(2 * i + 1), HEX));
+        }
+    }
+
+    /** Reads the raw bytes of a sha1 ID and returns it in hex.
+     * @param in the stream to read from
+     * @throws IOException */
+    public static String readID(DataInput in) throws IOException {
+        byte[] raw = new byte[ID_LENGTH];
+        in.readFully(raw);
+        return toHex(raw, 0);
+    }
+
+    /** Returns the sha1 ID stored at OFFSET in RAW, in hex.
+     * @param raw raw ID bytes
+     * @param offset where the ID starts */
+    public static String toHex(byte[] raw, int offset) {
+        char[] hex = new char[2 * ID_LENGTH];
+        for (int i = 0; i < ID_LENGTH; i += 1) {
+            int b = raw[offset + i] & 0xff;
+            hex[2 * i] = Character.forDigit(b >>> 4, HEX);
+            hex[2 * i + 1] = Character.forDigit(b & 0xf, HEX);
+        }
+        return new String(hex);
+    }
+
+    /** Returns the sha1 ID of the concatenation of PARTS, in hex. This
+     * is Utils.sha1 for bytes, without formatting each byte separately.
+     * @param parts the bytes to hash */
+    public static String sha1(byte[]... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GitletException("System does not support SHA-1");
+        }
+        for (byte[] part: parts) {
+            digest.update(part);
+        }
+        return toHex(digest.digest(), 0);
+    }
+
+    /** Writes a length-prefixed UTF-8 string.
+     * @param out the stream to write to
+     * @param s the string
+     * @throws IOException */
+    public static void writeString(DataOutput out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a length-prefixed UTF-8 string.
+     * @param in the stream to read from
+     * @throws IOException */
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns whether STORED starts like a serialized Java object, as
+     * objects written by older versions of Gitlet do.
+     * @param stored the first bytes of a stored object */
+    public static boolean isSerialized(byte[] stored) {
+        if (stored.length < SERIALIZED.length) {
+            return false;
+        }
+        for (int i = 0; i < SERIALIZED.length; i += 1) {
+            if (stored[i] != SERIALIZED[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Number of bytes in a raw sha1 ID. */
+    public static final int ID_LENGTH = 20;
+
+    /** Radix of a hex digit. */
+    private static final int HEX = 16;
+
+    /** The first bytes of every serialized Java object. */
+    private static final byte[] SERIALIZED = {
+        (byte) 0xac, (byte) 0xed, 0x00, 0x05
+    };
+}
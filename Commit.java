@@ -1,26 +1,74 @@
 package gitlet;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.Map;
 
-/** Represents a commit.
+/** Represents a commit. A commit is stored in a compact binary format:
+ * a format version, the time in milliseconds and the UTC offset it was
+ * made at, the raw 20-byte parent IDs, the message, and then a table of
+ * file names and raw blob IDs sorted by file name. The header (everything
+ * before the table) can be read on its own, for commands like log that
+ * never look at the files. A commit's ID is the SHA-1 of its stored
+ * bytes, so it covers the files as well as the message, parent and time.
+ * Commits written by older versions of Gitlet, in version 1 of the format
+ * or as serialized Commit objects, are still read, and keep their old
+ * IDs, a SHA-1 of just the message, parent and timestamp.
  * @author Ryan Gomes
  */
 public class Commit implements Serializable {
 
-    /** A commit.
+    /** A commit. One with no parent is the initial commit, made at the
+     * epoch in UTC whatever the local time zone, so that it is the same
+     * in every repository.
      * @param msg message of the commit
      * @param par parent commit
-     * @param map blob HashMap */
-    public Commit(String msg, String par, HashMap<String, String> map) {
+     * @param tree files tracked by the commit */
+    public Commit(String msg, String par, Tree tree) {
         this.message = msg;
         this.parent = par;
         if (this.parent == null) {
-            this.timestamp = new SimpleDateFormat(time).format(0);
+            this.time = 0;
+            this.offset = 0;
         } else {
-            this.timestamp = new SimpleDateFormat(time).format(curTime);
+            this.time = System.currentTimeMillis();
+            this.offset = ZoneId.systemDefault().getRules()
+                    .getOffset(Instant.ofEpochMilli(this.time))
+                    .getTotalSeconds();
         }
-        blobs = map;
+        blobs = tree;
+    }
+
+    /** A commit made at the given time, or read from storage.
+     * @param msg message of the commit
+     * @param par parent commit
+     * @param millis time of the commit
+     * @param seconds UTC offset of the commit, in seconds
+     * @param tree files tracked by the commit, or null if only the header
+     *             was read */
+    public Commit(String msg, String par, long millis, int seconds,
+                   Tree tree) {
+        this.message = msg;
+        this.parent = par;
+        this.time = millis;
+        this.offset = seconds;
+        blobs = tree;
     }
 
     /** Return the message of the commit. */
@@ -30,7 +78,13 @@ public class Commit implements Serializable {
 
     /** Return the timestamp of the commit. */
     public String getTimestamp() {
-        return this.timestamp;
+        return FORMAT.format(Instant.ofEpochMilli(this.time)
+                .atOffset(ZoneOffset.ofTotalSeconds(this.offset)));
+    }
+
+    /** Return the time of the commit, in milliseconds since the epoch. */
+    public long getTime() {
+        return this.time;
     }
 
     /** Return the parent of the commit. */
@@ -38,31 +92,228 @@ public class Commit implements Serializable {
         return this.parent;
     }
 
-    /** Return the hashmap that tracks the blobs and corresponding files. */
-    public HashMap<String, String> getBlobs() {
+    /** Return the files tracked by the commit and their blobs. This is
+     * null for a commit read with readHeader. */
+    public Tree getBlobs() {
         return this.blobs;
     }
 
+    /** Return the UTC offset the commit was made at, in seconds. */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /** Return whether the commit's ID is the SHA-1 of its stored bytes,
+     * rather than an older ID (see compID). */
+    public boolean isContentAddressed() {
+        return this.version == VERSION;
+    }
+
     /** Return the sha1 ID of the commit. */
     public String compID() {
-        return Utils.sha1(this.message + this.parent + this.timestamp);
+        if (this.id == null) {
+            if (isContentAddressed()) {
+                encode();
+            } else {
+                this.id = Codec.sha1((this.message + this.parent
+                        + getTimestamp()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return this.id;
+    }
+
+    /** Returns the ID that a commit stored as STORED should be named by.
+     * @param stored the stored bytes of a commit */
+    public static String idOf(byte[] stored) {
+        if (!Codec.isSerialized(stored) && stored.length > MAGIC_LENGTH
+                && stored[MAGIC_LENGTH] == VERSION) {
+            return Codec.sha1(stored);
+        }
+        return decode(stored).compID();
+    }
+
+    /** Saves the commit to FILE.
+     * @param file a file in the commits directory */
+    public void write(File file) {
+        Utils.writeContents(file, encode());
+    }
+
+    /** Returns the commit in its stored form, in the version of the
+     * format it was made or read in. */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                HEADER_SIZE + this.message.length()
+                + this.blobs.size() * ENTRY_SIZE);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(this.version);
+            out.writeLong(this.time);
+            out.writeInt(this.offset);
+            out.writeByte(this.parent == null ? 0 : 1);
+            if (this.parent != null) {
+                Codec.writeID(out, this.parent);
+            }
+            Codec.writeString(out, this.message);
+            this.blobs.write(out);
+        } catch (IOException e) {
+            throw new GitletException("Internal error encoding commit.");
+        }
+        byte[] stored = bytes.toByteArray();
+        if (isContentAddressed() && this.id == null) {
+            this.id = Codec.sha1(stored);
+        }
+        return stored;
+    }
+
+    /** Returns the commit stored in FILE.
+     * @param file a file in the commits directory */
+    public static Commit read(File file) {
+        Commit commit = decode(Utils.readContents(file));
+        commit.id = file.getName();
+        return commit;
     }
 
+    /** Returns the commit stored in FILE without its table of files,
+     * which is not read from disk.
+     * @param file a file in the commits directory */
+    public static Commit readHeader(File file) {
+        try (InputStream in = new BufferedInputStream(
+                Files.newInputStream(file.toPath()), HEADER_BUFFER)) {
+            in.mark(MAGIC_LENGTH);
+            if (Codec.isSerialized(in.readNBytes(MAGIC_LENGTH))) {
+                return read(file);
+            }
+            in.reset();
+            Commit commit = decode(new DataInputStream(in), false);
+            commit.id = file.getName();
+            return commit;
+        } catch (IOException e) {
+            throw new GitletException("Corrupt commit " + file.getName()
+                    + ".");
+        }
+    }
+
+    /** Returns the commit stored as STORED.
+     * @param stored the stored bytes of a commit */
+    public static Commit decode(byte[] stored) {
+        try {
+            if (Codec.isSerialized(stored)) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(stored))) {
+                    return (Commit) in.readObject();
+                }
+            }
+            return decode(new DataInputStream(
+                    new ByteArrayInputStream(stored)), true);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw new GitletException("Corrupt commit.");
+        }
+    }
+
+    /** Reads a commit in the binary format from IN.
+     * @param in the stream to read from
+     * @param withBlobs whether to read the table of files
+     * @throws IOException */
+    private static Commit decode(DataInputStream in, boolean withBlobs)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("unknown commit format");
+        }
+        byte format = in.readByte();
+        if (format != VERSION && format != OLD_VERSION) {
+            throw new IOException("unknown commit format");
+        }
+        long millis = in.readLong();
+        int seconds = in.readInt();
+        String par = in.readByte() == 0 ? null : Codec.readID(in);
+        String msg = Codec.readString(in);
+        Tree tree = withBlobs ? Tree.read(in) : null;
+        Commit commit = new Commit(msg, par, millis, seconds, tree);
+        commit.version = format;
+        return commit;
+    }
+
+    /** Reads a commit serialized by an older version of Gitlet, whose
+     * timestamp was stored already formatted.
+     * @param in the stream to read from
+     * @throws IOException
+     * @throws ClassNotFoundException */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.message = (String) fields.get("message", null);
+        this.parent = (String) fields.get("parent", null);
+        this.blobs = Tree.of((Map<String, String>) fields.get("blobs",
+                null));
+        OffsetDateTime stamp = OffsetDateTime.parse(
+                (String) fields.get("timestamp", null), FORMAT);
+        this.time = stamp.toInstant().toEpochMilli();
+        this.offset = stamp.getOffset().getTotalSeconds();
+        this.version = OLD_VERSION;
+    }
+
+    /** Serialization version of commits written by older versions of
+     * Gitlet, which must stay readable. */
+    private static final long serialVersionUID = -1026960919704070474L;
+
+    /** The fields of commits written by older versions of Gitlet. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("message", String.class),
+        new ObjectStreamField("timestamp", String.class),
+        new ObjectStreamField("parent", String.class),
+        new ObjectStreamField("blobs", HashMap.class),
+        new ObjectStreamField("time", String.class),
+        new ObjectStreamField("curTime", Object.class),
+    };
+
+    /** Marks the start of a stored commit. */
+    private static final int MAGIC = 0x474c4300;
+
+    /** Number of bytes in MAGIC. */
+    private static final int MAGIC_LENGTH = 4;
+
+    /** Version of the stored commit format. */
+    private static final byte VERSION = 2;
+
+    /** Version of the stored commit format written before commit IDs
+     * covered the whole commit. */
+    private static final byte OLD_VERSION = 1;
+
+    /** Buffer size used when reading only the header. */
+    private static final int HEADER_BUFFER = 512;
+
+    /** Bytes set aside, when encoding, for everything but the message and
+     * the files: magic, version, time, offset and parent. */
+    private static final int HEADER_SIZE = 64;
+
+    /** Bytes set aside, when encoding, for each file: the length of its
+     * name, a typical name and its blob ID. */
+    private static final int ENTRY_SIZE = 64;
+
+    /** Format of a commit's timestamp. */
+    private static final DateTimeFormatter FORMAT =
+            DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z");
+
     /** Message of the commit. */
     private String message;
 
-    /** Timestamp of the commit. */
-    private String timestamp;
+    /** Time of the commit, in milliseconds since the epoch. */
+    private transient long time;
+
+    /** UTC offset the commit was made at, in seconds. */
+    private transient int offset;
 
     /** Parent of the commit. */
     private String parent;
 
-    /** Hashmap to track the blobs and corresponding files. */
-    private HashMap<String, String> blobs;
+    /** The files tracked by the commit and their blobs. */
+    private transient Tree blobs;
 
-    /** String pattern for computing timestamp. */
-    private String time = "EEE MMM d HH:mm:ss yyyy Z";
+    /** The sha1 ID of the commit, once known. */
+    private transient String id;
 
-    /** Object for computing current time. */
-    private Object curTime = System.currentTimeMillis();
+    /** Version of the stored format the commit was made or read in,
+     * which decides how its ID is computed. */
+    private transient byte version = VERSION;
 }
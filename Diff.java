@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Line diff based on Myers' O(ND) algorithm, using the linear space
+ * refinement that recursively splits on the middle snake.
+ * @author Ryan Gomes
+ */
+public class Diff {
+
+    /** Returns, for every line of AFTER, the index of the line of BEFORE
+     * it is matched with in a longest common subsequence, or -1 if the
+     * line was added.
+     * @param before the old lines
+     * @param after the new lines */
+    public static int[] match(String[] before, String[] after) {
+        HashMap<String, Integer> codes = new HashMap<>();
+        int[] a = new int[before.length];
+        int[] b = new int[after.length];
+        for (int i = 0; i < a.length; i += 1) {
+            a[i] = codes.computeIfAbsent(before[i], k -> codes.size());
+        }
+        for (int i = 0; i < b.length; i += 1) {
+            b[i] = codes.computeIfAbsent(after[i], k -> codes.size());
+        }
+        int[] match = new int[b.length];
+        Arrays.fill(match, -1);
+        lcs(a, 0, a.length, b, 0, b.length, match);
+        return match;
+    }
+
+    /** Records the matching of A[ALO..AHI) against B[BLO..BHI) in MATCH.
+     * @param a old sequence
+     * @param aLo start of the old range
+     * @param aHi end of the old range
+     * @param b new sequence
+     * @param bLo start of the new range
+     * @param bHi end of the new range
+     * @param match matched indices into A, by index into B */
+    private static void lcs(int[] a, int aLo, int aHi,
+                            int[] b, int bLo, int bHi, int[] match) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            match[bLo] = aLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+            match[bHi] = aHi;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] snake = middleSnake(a, aLo, aHi, b, bLo, bHi);
+        lcs(a, aLo, snake[0], b, bLo, snake[1], match);
+        for (int x = snake[0], y = snake[1]; x < snake[2]; x += 1, y += 1) {
+            match[y] = x;
+        }
+        lcs(a, snake[2], aHi, b, snake[3], bHi, match);
+    }
+
+    /** Returns the start and end points {x, y, u, v} of the middle snake
+     * of an optimal edit script turning A[ALO..AHI) into B[BLO..BHI).
+     * @param a old sequence
+     * @param aLo start of the old range
+     * @param aHi end of the old range
+     * @param b new sequence
+     * @param bLo start of the new range
+     * @param bHi end of the new range */
+    private static int[] middleSnake(int[] a, int aLo, int aHi,
+                                     int[] b, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int off = max + 1;
+        int[] vf = new int[2 * max + 3];
+        int[] vb = new int[2 * max + 3];
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && vf[off + k - 1] < vf[off + k + 1])) {
+                    x = vf[off + k + 1];
+                } else {
+                    x = vf[off + k - 1] + 1;
+                }
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vf[off + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1
+                        && x + vb[off + kb] >= n) {
+                    return new int[] {aLo + x0, bLo + y0, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && vb[off + k - 1] < vb[off + k + 1])) {
+                    x = vb[off + k + 1];
+                } else {
+                    x = vb[off + k - 1] + 1;
+                }
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m
+                        && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vb[off + k] = x;
+                int kf = delta - k;
+                if (!odd && kf >= -d && kf <= d && x + vf[off + kf] >= n) {
+                    return new int[] {aHi - x, bHi - y, aHi - x0, bHi - y0};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+}
@@ -0,0 +1,538 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Loads a history described by a stream of commands, in the subset of
+ * the format of git fast-import that Gitlet can represent, writing blobs
+ * and commits straight into the object store:
+ *
+ *     blob                          a blob, followed by an optional
+ *     mark :[number]                mark naming it, and its contents:
+ *     data [length]                 exactly [length] bytes follow.
+ *
+ *     commit [branch]               a commit on [branch], with an
+ *     mark :[number]                optional mark, the time it was made
+ *     committer [who] [secs] [tz]   (seconds since the epoch, +hhmm),
+ *     data [length]                 its message, and its parent, which
+ *     from [commit]                 is otherwise the branch's tip; then
+ *     M [mode] [blob] [path]        files changed (the blob may be
+ *     D [path]                      inline, followed by data), deleted,
+ *     deleteall                     or all deleted.
+ *
+ *     reset [branch]                moves [branch] to the commit given
+ *     from [commit]                 by an optional from line.
+ *
+ *     checkpoint                    saves the branches; see below.
+ *
+ * A blob is named by a mark or its ID, and a commit by a mark, its ID or
+ * a branch. Branches may be given as refs/heads/[branch]. Since Gitlet
+ * commits have one parent, merge lines are ignored; author, encoding,
+ * original-oid, feature and option lines are ignored too, and progress
+ * lines are printed. The empty line that may follow any data is skipped.
+ *
+ * Objects are written without being synced, and branches are only
+ * written at a checkpoint and at the end of the stream, after every
+ * object written so far has been synced, so a branch never refers to a
+ * commit that could be lost.
+ * @author Ryan Gomes
+ */
+public class FastImport {
+
+    /** An import into the given object store and branch directory.
+     * @param commits the commits directory
+     * @param blobs the blob directory
+     * @param branches the branch directory
+     * @param current the files holding a copy of each worktree's current
+     *                branch */
+    public FastImport(File commits, File blobs, File branches,
+                      List<File> current) {
+        commitsDir = commits;
+        blobDir = blobs;
+        branchDir = branches;
+        heads = current;
+    }
+
+    /** Imports every command in IN, and returns the number of commits
+     * imported.
+     * @param in the stream of commands
+     * @throws IOException */
+    public int run(InputStream in) throws IOException {
+        input = in;
+        String line = readLine();
+        while (line != null) {
+            if (line.isEmpty() || line.startsWith("#")
+                    || line.startsWith("feature ")
+                    || line.startsWith("option ")) {
+                line = readLine();
+            } else if (line.equals("blob")) {
+                line = blob();
+            } else if (line.startsWith("commit ")) {
+                line = commit(branch(line.substring("commit ".length())));
+            } else if (line.startsWith("reset ")) {
+                line = reset(branch(line.substring("reset ".length())));
+            } else if (line.equals("checkpoint")) {
+                checkpoint();
+                line = readLine();
+            } else if (line.startsWith("progress ")) {
+                System.out.println(line.substring("progress ".length()));
+                line = readLine();
+            } else if (line.equals("done")) {
+                break;
+            } else {
+                throw error("Unknown command: " + line);
+            }
+        }
+        checkpoint();
+        return commitCount;
+    }
+
+    /** Return the number of blobs written. */
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    /** Return the number of bytes of blobs and commits written. */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /** Reads a blob command, after its first line, and returns the line
+     * after it.
+     * @throws IOException */
+    private String blob() throws IOException {
+        String line = readLine();
+        String mark = null;
+        if (line != null && line.startsWith("mark ")) {
+            mark = line.substring("mark ".length());
+            line = readLine();
+        }
+        line = skip(line, "original-oid ");
+        String id = writeBlob(data(line));
+        if (mark != null) {
+            marks.put(mark, id);
+        }
+        return readLine();
+    }
+
+    /** Reads a commit command on BRANCH, after its first line, and
+     * returns the line after it.
+     * @param branch the branch
+     * @throws IOException */
+    private String commit(String branch) throws IOException {
+        String line = readLine();
+        String mark = null;
+        if (line != null && line.startsWith("mark ")) {
+            mark = line.substring("mark ".length());
+            line = readLine();
+        }
+        line = skip(line, "original-oid ");
+        line = skip(line, "author ");
+        if (line == null || !line.startsWith("committer ")) {
+            throw error("Expected committer.");
+        }
+        String[] words = line.split(" ");
+        if (words.length < 3) {
+            throw error("Bad committer: " + line);
+        }
+        long millis;
+        int offset;
+        try {
+            millis = Long.parseLong(words[words.length - 2]) * MILLIS;
+            offset = offset(words[words.length - 1]);
+        } catch (NumberFormatException e) {
+            throw error("Bad committer: " + line);
+        }
+        line = skip(readLine(), "encoding ");
+        String message = new String(data(line), StandardCharsets.UTF_8);
+        if (message.endsWith("\n")) {
+            message = message.substring(0, message.length() - 1);
+        }
+        Commit parent = tips.containsKey(branch) ? tips.get(branch)
+                : readTip(branch);
+        line = readLine();
+        if (line != null && line.isEmpty()) {
+            line = readLine();
+        }
+        if (line != null && line.startsWith("from ")) {
+            parent = commitNamed(line.substring("from ".length()));
+            line = readLine();
+        }
+        while (line != null && line.startsWith("merge ")) {
+            line = readLine();
+        }
+
+        Tree tree = parent == null ? Tree.EMPTY : parent.getBlobs();
+        TreeMap<String, String> changed = new TreeMap<>();
+        TreeSet<String> removed = new TreeSet<>();
+        while (line != null && !line.isEmpty()) {
+            boolean inline = false;
+            if (line.equals("deleteall")) {
+                for (int i = 0; i < tree.size(); i += 1) {
+                    removed.add(tree.name(i));
+                }
+                changed.clear();
+            } else if (line.startsWith("M ")) {
+                String[] parts = line.split(" ", 4);
+                if (parts.length < 4) {
+                    throw error("Bad file change: " + line);
+                }
+                String id;
+                if (parts[2].equals("inline")) {
+                    id = writeBlob(data(readLine()));
+                    inline = true;
+                } else {
+                    id = blobNamed(parts[2]);
+                }
+                String path = path(parts[3]);
+                changed.put(path, id);
+                removed.remove(path);
+            } else if (line.startsWith("D ")) {
+                String path = path(line.substring(2));
+                changed.remove(path);
+                removed.add(path);
+            } else {
+                break;
+            }
+            line = readLine();
+            if (inline && line != null && line.isEmpty()) {
+                line = readLine();
+            }
+        }
+
+        Commit commit = new Commit(message,
+                parent == null ? null : parent.compID(), millis, offset,
+                tree.apply(changed, removed));
+        byte[] stored = commit.encode();
+        File file = Utils.join(commitsDir, commit.compID());
+        Utils.writeContents(file, stored);
+        unsynced.add(file);
+        bytes += stored.length;
+        commitCount += 1;
+        if (mark != null) {
+            marks.put(mark, commit.compID());
+        }
+        tips.put(branch, commit);
+        return line;
+    }
+
+    /** Reads a reset command on BRANCH, after its first line, and returns
+     * the line after it.
+     * @param branch the branch
+     * @throws IOException */
+    private String reset(String branch) throws IOException {
+        String line = readLine();
+        if (line != null && line.startsWith("from ")) {
+            tips.put(branch, commitNamed(line.substring("from ".length())));
+            line = readLine();
+        }
+        return line;
+    }
+
+    /** Syncs every object written since the last checkpoint, and the
+     * directories holding them, and then writes the branches moved
+     * since.
+     * @throws IOException */
+    private void checkpoint() throws IOException {
+        try {
+            unsynced.parallelStream().forEach(file -> {
+                try (FileChannel channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!unsynced.isEmpty()) {
+            for (File dir: new File[] {commitsDir, blobDir}) {
+                try (FileChannel channel = FileChannel.open(dir.toPath(),
+                        StandardOpenOption.READ)) {
+                    channel.force(true);
+                }
+            }
+        }
+        unsynced.clear();
+        HashMap<String, File> current = new HashMap<>();
+        for (File head: heads) {
+            if (head.exists()) {
+                current.put(Branch.read(head, commitsDir).getBranchName(),
+                        head);
+            }
+        }
+        for (Map.Entry<String, Commit> tip: tips.entrySet()) {
+            Branch branch = new Branch(tip.getKey());
+            branch.setHead(tip.getValue());
+            File file = Utils.join(branchDir, tip.getKey());
+            file.getParentFile().mkdirs();
+            branch.write(file);
+            if (current.containsKey(tip.getKey())) {
+                branch.write(current.get(tip.getKey()));
+            }
+        }
+        tips.clear();
+    }
+
+    /** Stores CONTENTS as a blob, unless it is already stored, and
+     * returns its ID.
+     * @param contents the contents of a file */
+    private String writeBlob(byte[] contents) {
+        String id = Codec.sha1(contents);
+        File file = Utils.join(blobDir, id);
+        if (!file.exists()) {
+            Utils.writeContents(file, contents);
+            unsynced.add(file);
+            bytes += contents.length;
+            blobCount += 1;
+        }
+        return id;
+    }
+
+    /** Reads the data announced by LINE and returns it.
+     * @param line a data line
+     * @throws IOException */
+    private byte[] data(String line) throws IOException {
+        if (line == null || !line.startsWith("data ")) {
+            throw error("Expected data.");
+        }
+        int length;
+        try {
+            length = Integer.parseInt(line.substring("data ".length()));
+        } catch (NumberFormatException e) {
+            throw error("Bad data: " + line);
+        }
+        byte[] contents = new byte[length];
+        int buffered = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, contents, 0, buffered);
+        position += buffered;
+        if (input.readNBytes(contents, buffered, length - buffered)
+                != length - buffered) {
+            throw error("Unexpected end of input.");
+        }
+        return contents;
+    }
+
+    /** Returns the ID of the blob named by NAME, a mark or an ID.
+     * @param name a blob name */
+    private String blobNamed(String name) {
+        if (name.startsWith(":")) {
+            String id = marks.get(name);
+            if (id == null) {
+                throw error("Unknown mark " + name + ".");
+            }
+            return id;
+        }
+        if (!Utils.join(blobDir, name).exists()) {
+            throw error("Unknown blob " + name + ".");
+        }
+        return name;
+    }
+
+    /** Returns the commit named by NAME, a mark, an ID or a branch.
+     * @param name a commit name */
+    private Commit commitNamed(String name) {
+        String id = name;
+        if (name.startsWith(":")) {
+            id = marks.get(name);
+        } else {
+            String branch = branch(name);
+            if (tips.containsKey(branch)) {
+                return tips.get(branch);
+            }
+            Commit tip = readTip(branch);
+            if (tip != null) {
+                return tip;
+            }
+        }
+        if (id == null || !Utils.join(commitsDir, id).isFile()) {
+            throw error("Unknown commit " + name + ".");
+        }
+        return Commit.read(Utils.join(commitsDir, id));
+    }
+
+    /** Returns the head of the stored branch with the given name, or null
+     * if there is none.
+     * @param branch a branch name */
+    private Commit readTip(String branch) {
+        File file = Utils.join(branchDir, branch);
+        if (!file.isFile()) {
+            return null;
+        }
+        return Branch.read(file, commitsDir).getHead();
+    }
+
+    /** Returns the branch name REF, without any refs/heads/ in front.
+     * @param ref a branch name or ref */
+    private static String branch(String ref) {
+        return ref.startsWith(HEADS) ? ref.substring(HEADS.length()) : ref;
+    }
+
+    /** Returns PATH, unquoted if it is in double quotes.
+     * @param path a path */
+    private static String path(String path) {
+        if (!path.startsWith("\"") || !path.endsWith("\"")
+                || path.length() < 2) {
+            return path;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < path.length() - 1; i += 1) {
+            char c = path.charAt(i);
+            if (c == '\\' && i + 1 < path.length() - 1) {
+                i += 1;
+                c = path.charAt(i);
+                if (c == 'n') {
+                    c = '\n';
+                } else if (c == 't') {
+                    c = '\t';
+                }
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /** Returns the UTC offset TZ, given as +hhmm or -hhmm, in seconds.
+     * @param tz a UTC offset */
+    private int offset(String tz) {
+        if (tz.length() != TZ_LENGTH
+                || tz.charAt(0) != '+' && tz.charAt(0) != '-') {
+            throw error("Bad time zone: " + tz);
+        }
+        int hours = Integer.parseInt(tz.substring(1, 3));
+        int minutes = Integer.parseInt(tz.substring(3));
+        int seconds = hours * 3600 + minutes * 60;
+        return tz.charAt(0) == '-' ? -seconds : seconds;
+    }
+
+    /** Returns LINE, or the line after it if it starts with PREFIX.
+     * @param line a line
+     * @param prefix the start of a line to skip
+     * @throws IOException */
+    private String skip(String line, String prefix) throws IOException {
+        if (line != null && line.startsWith(prefix)) {
+            return readLine();
+        }
+        return line;
+    }
+
+    /** Returns the next line of input, without its line feed, or null at
+     * the end of the input. A line that fits in the buffer is decoded
+     * straight from it.
+     * @throws IOException */
+    private String readLine() throws IOException {
+        lineBuffer.reset();
+        while (position < limit || fill()) {
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position += 1;
+            }
+            if (position < limit) {
+                position += 1;
+                lineNumber += 1;
+                if (lineBuffer.size() == 0) {
+                    return new String(buffer, start, position - 1 - start,
+                            StandardCharsets.UTF_8);
+                }
+                lineBuffer.write(buffer, start, position - 1 - start);
+                return lineBuffer.toString(StandardCharsets.UTF_8);
+            }
+            lineBuffer.write(buffer, start, position - start);
+        }
+        if (lineBuffer.size() == 0) {
+            return null;
+        }
+        lineNumber += 1;
+        return lineBuffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Reads more input into the empty buffer, returning false at the
+     * end of the input.
+     * @throws IOException */
+    private boolean fill() throws IOException {
+        position = 0;
+        limit = Math.max(0, input.read(buffer));
+        return limit > 0;
+    }
+
+    /** Returns an error about the current line of input.
+     * @param message what is wrong */
+    private GitletException error(String message) {
+        return new GitletException("fast-import: line " + lineNumber
+                + ": " + message);
+    }
+
+    /** Start of a branch given as a ref. */
+    private static final String HEADS = "refs/heads/";
+
+    /** Milliseconds per second. */
+    private static final long MILLIS = 1000;
+
+    /** Length of a +hhmm UTC offset. */
+    private static final int TZ_LENGTH = 5;
+
+    /** Size of the input buffer. */
+    private static final int BUFFER = 1 << 16;
+
+    /** The commits directory. */
+    private File commitsDir;
+
+    /** The blob directory. */
+    private File blobDir;
+
+    /** The branch directory. */
+    private File branchDir;
+
+    /** The files holding a copy of each worktree's current branch. */
+    private List<File> heads;
+
+    /** The input, while running. */
+    private InputStream input;
+
+    /** Input read ahead. */
+    private byte[] buffer = new byte[BUFFER];
+
+    /** Where the unread input in the buffer starts. */
+    private int position;
+
+    /** Where the unread input in the buffer ends. */
+    private int limit;
+
+    /** The part already read of a line that runs past the buffer. */
+    private ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+    /** Number of lines of input read. */
+    private int lineNumber;
+
+    /** The IDs of marked blobs and commits, by mark. */
+    private HashMap<String, String> marks = new HashMap<>();
+
+    /** The branches moved since the last checkpoint, and their heads. */
+    private LinkedHashMap<String, Commit> tips = new LinkedHashMap<>();
+
+    /** Objects written since the last checkpoint. */
+    private ArrayList<File> unsynced = new ArrayList<>();
+
+    /** Number of commits written. */
+    private int commitCount;
+
+    /** Number of blobs written. */
+    private int blobCount;
+
+    /** Number of bytes of objects written. */
+    private long bytes;
+}
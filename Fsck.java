@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Checks the object store: that every blob and commit is stored under
+ * the ID of its contents, that the parent and blobs of every commit are
+ * stored, and that every ref points at a stored commit. Commits and blobs
+ * that nothing refers to are reported as dangling, which is not an error.
+ * Objects are read and hashed in parallel, on every core; the history is
+ * then walked from the refs using the parents gathered on the way, with
+ * nothing read again. Temporary files left by interrupted writes, ending
+ * in .tmp, are skipped.
+ * @author Ryan Gomes
+ */
+public class Fsck {
+
+    /** A check of the given object store.
+     * @param commits the commits directory
+     * @param blobs the blob directory */
+    public Fsck(File commits, File blobs) {
+        commitsDir = commits;
+        blobDir = blobs;
+    }
+
+    /** Checks the object store, with the commits that REFS point at and
+     * the blobs in STAGED counting as used, and returns the problems
+     * found, sorted.
+     * @param refs the branch and head pointer files, by name
+     * @param staged IDs of blobs staged in an index */
+    public List<String> check(Map<String, File> refs,
+                              Collection<String> staged) {
+        List<String> blobIDs = list(blobDir);
+        List<String> commitIDs = list(commitsDir);
+        Set<String> blobs = new HashSet<>(blobIDs);
+        Set<String> commits = new HashSet<>(commitIDs);
+        blobCount = blobIDs.size();
+        commitCount = commitIDs.size();
+        blobIDs.parallelStream().forEach(this::checkBlob);
+        commitIDs.parallelStream().forEach(id ->
+                checkCommit(id, commits, blobs));
+
+        HashSet<String> reachable = new HashSet<>();
+        for (Map.Entry<String, File> ref: refs.entrySet()) {
+            String id;
+            try {
+                id = Branch.read(ref.getValue(), commitsDir).getHead()
+                        .compID();
+            } catch (GitletException | IllegalArgumentException e) {
+                problems.add("bad ref " + ref.getKey());
+                continue;
+            }
+            while (id != null && reachable.add(id)) {
+                String parent = parents.get(id);
+                id = parent == null || parent.isEmpty() ? null : parent;
+            }
+        }
+        for (String id: parents.keySet()) {
+            if (!reachable.contains(id)) {
+                dangling.add("dangling commit " + id);
+            }
+        }
+        used.addAll(staged);
+        for (String id: blobIDs) {
+            if (!used.contains(id)) {
+                dangling.add("dangling blob " + id);
+            }
+        }
+        Collections.sort(dangling);
+        ArrayList<String> result = new ArrayList<>(problems);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the commits and blobs that nothing refers to, sorted, once
+     * checked. */
+    public List<String> getDangling() {
+        return dangling;
+    }
+
+    /** Return the number of commits checked. */
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    /** Return the number of blobs checked. */
+    public int getBlobCount() {
+        return blobCount;
+    }
+
+    /** Return the number of bytes read. */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /** Checks that the blob with the given ID is stored under the ID of
+     * its contents.
+     * @param id ID of a stored blob */
+    private void checkBlob(String id) {
+        byte[] stored = readObject(blobDir, id);
+        if (stored == null) {
+            problems.add("unreadable blob " + id);
+            return;
+        }
+        try {
+            if (!Codec.sha1(Blob.contents(stored, id)).equals(id)) {
+                problems.add("corrupt blob " + id);
+            }
+        } catch (GitletException e) {
+            problems.add("corrupt blob " + id);
+        }
+    }
+
+    /** Checks that the commit with the given ID is stored under the ID of
+     * its contents, and that its parent and blobs are stored, and records
+     * its parent.
+     * @param id ID of a stored commit
+     * @param commits IDs of every stored commit
+     * @param blobs IDs of every stored blob */
+    private void checkCommit(String id, Set<String> commits,
+                             Set<String> blobs) {
+        byte[] stored = readObject(commitsDir, id);
+        if (stored == null) {
+            problems.add("unreadable commit " + id);
+            return;
+        }
+        Commit commit;
+        try {
+            if (!Commit.idOf(stored).equals(id)) {
+                problems.add("corrupt commit " + id);
+                return;
+            }
+            commit = Commit.decode(stored);
+        } catch (GitletException e) {
+            problems.add("corrupt commit " + id);
+            return;
+        }
+        String parent = commit.getParent();
+        if (parent != null && !commits.contains(parent)) {
+            problems.add("commit " + id + ": missing parent " + parent);
+        }
+        parents.put(id, parent == null ? "" : parent);
+        Tree tree = commit.getBlobs();
+        for (int i = 0; i < tree.size(); i += 1) {
+            String blob = tree.id(i);
+            if (used.contains(blob)) {
+                continue;
+            }
+            used.add(blob);
+            if (!blobs.contains(blob)) {
+                problems.add("commit " + id + ": missing blob " + blob
+                        + " for " + tree.name(i));
+            }
+        }
+    }
+
+    /** Returns the stored bytes of the object with the given ID in DIR,
+     * or null if they cannot be read.
+     * @param dir the commits or blob directory
+     * @param id ID of the object */
+    private byte[] readObject(File dir, String id) {
+        try {
+            byte[] stored = Files.readAllBytes(Utils.join(dir, id).toPath());
+            bytes.add(stored.length);
+            return stored;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Returns the IDs of the objects stored in DIR, in the order the
+     * directory lists them, which tends to follow the order they were
+     * written in and is much faster to read in than sorted order.
+     * @param dir the commits or blob directory */
+    private static List<String> list(File dir) {
+        ArrayList<String> result = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return result;
+        }
+        for (File file: files) {
+            if (file.isFile() && !file.getName().endsWith(TEMP)) {
+                result.add(file.getName());
+            }
+        }
+        return result;
+    }
+
+    /** End of the name of a file being written into the object store. */
+    private static final String TEMP = ".tmp";
+
+    /** The commits directory. */
+    private File commitsDir;
+
+    /** The blob directory. */
+    private File blobDir;
+
+    /** Problems found so far. */
+    private ConcurrentLinkedQueue<String> problems =
+            new ConcurrentLinkedQueue<>();
+
+    /** Commits and blobs that nothing refers to. */
+    private ArrayList<String> dangling = new ArrayList<>();
+
+    /** The parent of each commit read, or "" for a commit with none. */
+    private ConcurrentHashMap<String, String> parents =
+            new ConcurrentHashMap<>();
+
+    /** IDs of the blobs some commit or index refers to. */
+    private Set<String> used = ConcurrentHashMap.newKeySet();
+
+    /** Number of bytes read. */
+    private LongAdder bytes = new LongAdder();
+
+    /** Number of commits checked. */
+    private int commitCount;
+
+    /** Number of blobs checked. */
+    private int blobCount;
+}
@@ -1,10 +1,35 @@
 package gitlet;
 
+import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
 
 /** Represents a Gitlet object.
  * @author Ryan Gomes
@@ -12,32 +37,107 @@ import java.util.ArrayList;
 public class Gitlet {
 
     /** Current Working Directory. */
-    private File cwd = new File(System.getProperty("user.dir"));
+    private File cwd;
 
-    /** Gitlet Directory. */
-    private File gitletDir = Utils.join(cwd, ".gitlet");
+    /** Gitlet Directory, which holds the files of this working directory
+     * alone: the .gitlet directory, or for a linked worktree (see
+     * worktreeAdd), the directory its .gitlet file points to. */
+    private File gitletDir;
 
-    /** Staging Area File. */
-    private File stagingArea = Utils.join(gitletDir, "stagingArea");
+    /** Common Directory, the main .gitlet directory, which holds what
+     * every worktree shares: the object store and the branches. */
+    private File commonDir;
 
-    /** Removing Area File. */
-    private File removingArea = Utils.join(gitletDir, "removingArea");
+    /** Index File, which holds the staging area. */
+    private File indexFile;
+
+    /** Staging Area Directory of older versions, replaced by the index. */
+    private File stagingArea;
+
+    /** Removing Area Directory of older versions, replaced by the index. */
+    private File removingArea;
 
     /** Branch File. */
-    private File branchFile = Utils.join(gitletDir, "branch");
+    private File branchFile;
 
     /** Head Pointer File. */
-    private File curBranch = Utils.join(gitletDir, "curBranch");
+    private File curBranch;
 
     /** Blob Directory. */
-    private File blobDir = Utils.join(gitletDir, ".blob");
+    private File blobDir;
 
     /** Commits Directory. */
-    private File commitsDir = Utils.join(gitletDir, ".commits");
+    private File commitsDir;
+
+    /** Blame Cache Directory. */
+    private File blameDir;
+
+    /** Remotes Directory. */
+    private File remotesDir;
+
+    /** Worktrees Directory, which holds the Gitlet Directory of each
+     * linked worktree. */
+    private File worktreesDir;
+
+    /** Snapshot File, which caches what is known about working files. */
+    private File snapshotFile;
+
+    /** Watch Directory, which holds the watcher's pid file and log. */
+    private File watchDir;
+
+    /** Sparse Checkout File, which lists the files kept in the working
+     * directory. */
+    private File sparseFile;
 
     /** The commit object for the head pointer. */
     private Commit head;
 
+    /** Size of the buffer used when printing long output. */
+    private static final int OUTPUT_BUFFER = 1 << 16;
+
+    /** Start of the line in a linked worktree's .gitlet file. */
+    private static final String GITDIR = "gitdir: ";
+
+    /** Name of the file, in a linked worktree's Gitlet Directory, that
+     * holds the path of the worktree's .gitlet file. */
+    private static final String LINK_FILE = "gitdir";
+
+    /** A Gitlet version-control system in the current directory. */
+    public Gitlet() {
+        this(new File(System.getProperty("user.dir")));
+    }
+
+    /** A Gitlet version-control system in the working directory DIR,
+     * which is either the main worktree, with a .gitlet directory, or a
+     * linked worktree, whose .gitlet file holds a line gitdir: followed
+     * by the path of its own directory under .gitlet/worktrees.
+     * @param dir the working directory */
+    public Gitlet(File dir) {
+        cwd = dir;
+        gitletDir = Utils.join(cwd, ".gitlet");
+        commonDir = gitletDir;
+        if (gitletDir.isFile()) {
+            String link = Utils.readContentsAsString(gitletDir).trim();
+            if (link.startsWith(GITDIR)) {
+                gitletDir = new File(link.substring(GITDIR.length()));
+                commonDir = gitletDir.getParentFile().getParentFile();
+            }
+        }
+        indexFile = Utils.join(gitletDir, "index");
+        stagingArea = Utils.join(gitletDir, "stagingArea");
+        removingArea = Utils.join(gitletDir, "removingArea");
+        curBranch = Utils.join(gitletDir, "curBranch");
+        snapshotFile = Utils.join(gitletDir, "snapshot");
+        watchDir = Utils.join(gitletDir, "watch");
+        sparseFile = Utils.join(gitletDir, "sparse-checkout");
+        branchFile = Utils.join(commonDir, "branch");
+        blobDir = Utils.join(commonDir, ".blob");
+        commitsDir = Utils.join(commonDir, ".commits");
+        blameDir = Utils.join(commonDir, ".blame");
+        remotesDir = Utils.join(commonDir, "remotes");
+        worktreesDir = Utils.join(commonDir, "worktrees");
+    }
+
     /** Creates a new Gitlet version-control system in the current directory.
      * This system will automatically start with one commit: a commit that
      * contains no files and has the commit message initial commit (just
@@ -53,33 +153,31 @@ public class Gitlet {
      * back to it.
      * @throws IOException */
     public void init() throws IOException {
-        if (!gitletDir.exists()) {
+        if (!Utils.join(cwd, ".gitlet").exists()) {
             gitletDir.mkdir();
-            stagingArea.mkdir();
-            removingArea.mkdir();
             branchFile.mkdir();
             blobDir.mkdir();
             curBranch.createNewFile();
             commitsDir.mkdir();
+            new Index().write(indexFile);
         } else {
             System.out.println("A Gitlet version-control system "
                     + "already exists in the current directory.");
             System.exit(0);
         }
 
-        Commit initial = new Commit("initial commit", null, new HashMap<>());
+        Commit initial = new Commit("initial commit", null, Tree.EMPTY);
         File initialCommit = Utils.join(commitsDir, initial.compID());
         initialCommit.createNewFile();
-        Utils.writeObject(initialCommit, initial);
+        initial.write(initialCommit);
 
         File masterFile = Utils.join(branchFile, "master");
         masterFile.createNewFile();
         Branch masterBranch = new Branch("master");
-        masterBranch.add(initial);
         masterBranch.setHead(initial);
-        Utils.writeObject(masterFile, masterBranch);
+        masterBranch.write(masterFile);
 
-        Utils.writeObject(curBranch, masterBranch);
+        masterBranch.write(curBranch);
     }
 
     /** Adds a copy of the file as it currently exists to the staging
@@ -92,54 +190,110 @@ public class Gitlet {
      * and remove it from the staging area if it is already there (as can
      * happen when a file is changed, added, and then changed back). The
      * file will no longer be staged for removal (see gitlet rm), if it
-     * was at the time of the command.
-     * @param newAdd name of the file
+     * was at the time of the command. Given a directory, or a glob
+     * pattern such as *.txt or src/**, every file under it (or matching
+     * it) that is not ignored by .gitletignore is added, as if each had
+     * been added on its own; the files are hashed and stored in parallel.
+     * Files whose size and modification time are unchanged since they
+     * were last hashed are not read again, and while a watcher is running
+     * (see watch) only the paths it saw change are looked at.
+     * @param paths names of the files, directories or patterns
      * @throws IOException */
-    public void add(String newAdd) throws IOException {
-        File addCommit = Utils.join(cwd, newAdd);
-
-        if (!addCommit.exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
+    public void add(String... paths) throws IOException {
+        WorkTree tree = new WorkTree(cwd);
+        Map<String, String> found;
+        File single = Utils.join(cwd, paths[0]);
+        if (paths.length == 1 && !isPattern(paths[0]) && single.isFile()) {
+            Blob blob = new Blob(single);
+            blob.save(blobDir);
+            found = new HashMap<>();
+            found.put(tree.name(single.toPath()), blob.getShaID());
+        } else {
+            found = hashPaths(tree, paths);
         }
 
-        Branch branchHolder = Utils.readObject(curBranch, Branch.class);
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
         head = branchHolder.getHead();
-        Blob temp = new Blob(addCommit);
-
-        for (File file: removingArea.listFiles()) {
-            if (file.getName().equals(newAdd)) {
-                File remove = Utils.join(removingArea, addCommit.getName());
-                remove.delete();
-                System.exit(0);
+        Index index = readIndex();
+        for (Map.Entry<String, String> entry: found.entrySet()) {
+            String name = entry.getKey();
+            String id = entry.getValue();
+            index.getRemoved().remove(name);
+            if (id.equals(head.getBlobs().get(name))) {
+                index.unstage(name);
+                continue;
+            }
+            if (!Utils.join(blobDir, id).exists()) {
+                Blob blob = new Blob(tree.path(name).toFile());
+                blob.save(blobDir);
+                id = blob.getShaID();
             }
+            index.stage(name, id);
         }
+        index.write(indexFile);
+    }
 
-        if (head.getParent() == null) {
-            File add = Utils.join(stagingArea, addCommit.getName());
-            add.createNewFile();
-            Utils.writeContents(add, Utils.readContentsAsString(addCommit));
-        } else {
-            if (head.getBlobs().containsKey(addCommit.getName())) {
-                File hold = Utils.join(blobDir, head.getBlobs().get(newAdd));
-                Blob blobHolder = Utils.readObject(hold, Blob.class);
-                boolean addIf = true;
-                File add = Utils.join(stagingArea, addCommit.getName());
-                if (blobHolder.compare(temp)
-                        && addCommit.getName().equals(newAdd)) {
-                    addIf = false;
-                }
-                if (addIf) {
-                    add.createNewFile();
-                    String contents = Utils.readContentsAsString((addCommit));
-                    Utils.writeContents(add, contents);
+    /** Returns the blob IDs of the files that PATHS name or match, by
+     * name, as described for add. Unless a watcher is running, their
+     * blobs are stored as they are hashed.
+     * @param tree the working tree
+     * @param paths names of the files, directories or patterns
+     * @throws IOException */
+    private Map<String, String> hashPaths(WorkTree tree, String... paths)
+            throws IOException {
+        boolean watched = Watcher.running(watchDir) != null;
+        Snapshot cache = watched ? workingFiles(tree)
+                : Snapshot.read(snapshotFile);
+        TreeMap<String, String> known = watched ? cache.getIDs() : null;
+        Map<String, String> found = new HashMap<>();
+        for (String path: paths) {
+            File start = Utils.join(cwd, path);
+            Predicate<String> select = name -> true;
+            if (isPattern(path)) {
+                PathMatcher glob = FileSystems.getDefault()
+                        .getPathMatcher("glob:" + path);
+                boolean byName = !path.contains("/");
+                select = name -> {
+                    Path p = Paths.get(name);
+                    return glob.matches(byName ? p.getFileName() : p);
+                };
+                start = cwd;
+            } else if (!start.exists()) {
+                System.out.println("File does not exist.");
+                System.exit(0);
+            }
+            if (watched) {
+                String prefix = tree.name(start.toPath());
+                for (Map.Entry<String, String> entry: known.entrySet()) {
+                    String name = entry.getKey();
+                    if ((prefix.isEmpty() || name.equals(prefix)
+                            || name.startsWith(prefix + "/"))
+                            && select.test(name)) {
+                        found.put(name, entry.getValue());
+                    }
                 }
             } else {
-                File add = Utils.join(stagingArea, addCommit.getName());
-                add.createNewFile();
-                Utils.writeContents(add, Utils.readContentsAsString(addCommit));
+                Snapshot hashed = tree.hash(start.toPath(), select, blobDir,
+                        cache);
+                cache.putAll(hashed);
+                found.putAll(hashed.getIDs());
+            }
+        }
+        if (!watched) {
+            cache.write(snapshotFile);
+        }
+        return found;
+    }
+
+    /** Returns whether PATH is a glob pattern rather than a file name.
+     * @param path an argument to add */
+    private static boolean isPattern(String path) {
+        for (char c: "*?[{".toCharArray()) {
+            if (path.indexOf(c) >= 0) {
+                return true;
             }
         }
+        return false;
     }
 
     /** Saves a snapshot of certain files in the current commit and
@@ -159,8 +313,8 @@ public class Gitlet {
      * @param msg message
      * @throws IOException */
     public void commit(String msg) throws IOException {
-        if (stagingArea.listFiles().length == 0
-                && removingArea.listFiles().length == 0) {
+        Index index = readIndex();
+        if (index.isEmpty()) {
             System.out.println("No changes added to the commit.");
             System.exit(0);
         }
@@ -169,49 +323,25 @@ public class Gitlet {
             System.exit(0);
         }
 
-        Branch branch = Utils.readObject(curBranch, Branch.class);
+        Branch branch = Branch.read(curBranch, commitsDir);
         head = branch.getHead();
-        Commit com = new Commit(msg, head.compID(), head.getBlobs());
-        for (File file: stagingArea.listFiles()) {
-            boolean isDuplicate = true;
-            Blob blob = new Blob(file);
-            for (Map.Entry<String, String> obj: com.getBlobs().entrySet()) {
-                if (file.getName().equals(obj.getKey())) {
-                    com.getBlobs().replace(file.getName(), blob.getShaID());
-                    isDuplicate = false;
-                }
-            }
-            if (isDuplicate) {
-                com.getBlobs().put(file.getName(), blob.getShaID());
-            }
-            File holder = Utils.join(blobDir, blob.getShaID());
-            holder.createNewFile();
-            Utils.writeObject(holder, blob);
-        }
-        for (File file: removingArea.listFiles()) {
-            if (com.getBlobs().containsKey(file.getName())) {
-                com.getBlobs().remove(file.getName());
-            }
-        }
+        Tree blobs = head.getBlobs().apply(index.getStaged(),
+                index.getRemoved());
+        Commit com = new Commit(msg, head.compID(), blobs);
 
         File nextCommit = Utils.join(commitsDir, com.compID());
         nextCommit.createNewFile();
-        Utils.writeObject(nextCommit, com);
+        com.write(nextCommit);
 
-        Branch branch2 = Utils.readObject(curBranch, Branch.class);
+        Branch branch2 = Branch.read(curBranch, commitsDir);
         File hold = Utils.join(branchFile, branch2.getBranchName());
-        Branch hold2 = Utils.readObject(hold, Branch.class);
-        hold2.add(com);
+        Branch hold2 = Branch.read(hold, commitsDir);
         hold2.setHead(com);
-        Utils.writeObject(curBranch, hold2);
-        Utils.writeObject(hold, hold2);
+        hold2.write(curBranch);
+        hold2.write(hold);
 
-        for (File file: stagingArea.listFiles()) {
-            file.delete();
-        }
-        for (File file: removingArea.listFiles()) {
-            file.delete();
-        }
+        index.clear();
+        index.write(indexFile);
     }
 
     /** Unstage the file if it is currently staged for addition. If the
@@ -221,29 +351,16 @@ public class Gitlet {
      * current commit).
      * @param fileName name of file */
     public void rm(String fileName) throws IOException {
-        Branch branchHolder = Utils.readObject(curBranch, Branch.class);
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
         head = branchHolder.getHead();
-        boolean stage = false;
-        for (File file: stagingArea.listFiles()) {
-            if (file.getName().equals(fileName)) {
-                File staging = Utils.join(stagingArea, file.getName());
-                staging.delete();
-                stage = true;
-            }
-        }
-        for (Map.Entry<String, String> entry: head.getBlobs().entrySet()) {
-            if (fileName.equals(entry.getKey())) {
-                File removing = Utils.join(removingArea, fileName);
-                removing.createNewFile();
-            }
-        }
-        for (File file: removingArea.listFiles()) {
-            File remove = Utils.join(cwd, fileName);
-            if (file.getName().equals(remove.getName())) {
-                remove.delete();
-                stage = true;
-            }
+        Index index = readIndex();
+        boolean stage = index.unstage(fileName);
+        if (head.getBlobs().contains(fileName)) {
+            index.remove(fileName);
+            Utils.join(cwd, fileName).delete();
+            stage = true;
         }
+        index.write(indexFile);
         if (!stage) {
             System.out.println("No reason to remove the file.");
         }
@@ -256,31 +373,123 @@ public class Gitlet {
      * is what you get with git log --first-parent). This set of commit
      * nodes is called the commit's history. For every node in this
      * history, the information it should display is the commit id,
-     * the time the commit was made, and the commit message. */
-    public void log() {
-        Branch branchHolder = Utils.readObject(curBranch, Branch.class);
+     * the time the commit was made, and the commit message. At most
+     * LIMIT commits are shown, and the walk stops at the first commit
+     * made before SINCE. Commits are read ahead in the background (see
+     * Ancestry) while earlier ones are printed.
+     * @param limit the most commits to show
+     * @param since the earliest time to show, in milliseconds */
+    public void log(int limit, long since) {
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
         head = branchHolder.getHead();
-        while (head.getParent() != null) {
-            System.out.println("===");
-            System.out.println("commit " + head.compID());
-            System.out.println("Date: " + head.getTimestamp());
-            System.out.println(head.getMessage());
-            System.out.println();
-            File recentCommit = Utils.join(commitsDir, head.getParent());
-            head = Utils.readObject(recentCommit, Commit.class);
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), OUTPUT_BUFFER));
+        try (Ancestry history = new Ancestry(commitsDir, head)) {
+            for (int n = 0; n < limit && history.hasNext(); n += 1) {
+                Commit commit = history.next();
+                if (commit.getTime() < since) {
+                    break;
+                }
+                out.println("===");
+                out.println("commit " + commit.compID());
+                out.println("Date: " + commit.getTimestamp());
+                out.println(commit.getMessage());
+                out.println();
+            }
         }
-        System.out.println("===");
-        System.out.println("commit " + head.compID());
-        System.out.println("Date: " + head.getTimestamp());
-        System.out.println(head.getMessage());
-        System.out.println();
+        out.flush();
+    }
+
+    /** Prints each line of the file as it exists in the head commit,
+     * together with the commit that last changed that line. Each version
+     * of the file is annotated at most once: annotations are cached, so
+     * blaming the file again after a new commit only diffs the versions
+     * introduced since.
+     * @param fileName name of the file */
+    public void blame(String fileName) {
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
+        head = branchHolder.getHead();
+        if (!head.getBlobs().contains(fileName)) {
+            System.out.println("File does not exist in that commit.");
+            System.exit(0);
+        }
+        new Blame(commitsDir, blobDir, blameDir).print(head, fileName);
+    }
+
+    /** Prints the files that differ between the commits with the given
+     * IDs, in order of file name, each preceded by A if only the second
+     * commit tracks it, D if only the first does, or M if they track
+     * different versions of it. IDs may be abbreviated.
+     * @param id1 ID of the first commit
+     * @param id2 ID of the second commit */
+    public void diffTree(String id1, String id2) {
+        Commit first = Commit.read(findCommit(id1));
+        Commit second = Commit.read(findCommit(id2));
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out)));
+        for (TreeDiff.Change change: new TreeDiff(first.getBlobs(),
+                second.getBlobs())) {
+            switch (change.getKind()) {
+            case ADDED:
+                out.print("A\t");
+                break;
+            case REMOVED:
+                out.print("D\t");
+                break;
+            default:
+                out.print("M\t");
+                break;
+            }
+            out.println(change.getName());
+        }
+        out.flush();
+    }
+
+    /** Returns the files of every stored commit, skipping the temporary
+     * files, ending in .tmp, that older versions of Gitlet wrote into the
+     * commits directory. */
+    private ArrayList<File> commitFiles() {
+        ArrayList<File> files = new ArrayList<>();
+        for (File file: commitsDir.listFiles()) {
+            if (!file.getName().endsWith(".tmp")) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /** Returns the file of the commit whose ID is or starts with
+     * COMMITID, exiting if there is none, or if more than one commit
+     * starts with it.
+     * @param commitID a full or abbreviated commit ID */
+    private File findCommit(String commitID) {
+        File file = Utils.join(commitsDir, commitID);
+        if (file.isFile() && !commitID.endsWith(".tmp")) {
+            return file;
+        }
+        File found = null;
+        for (File other: commitFiles()) {
+            if (other.getName().startsWith(commitID)) {
+                if (found != null) {
+                    System.out.println("Commit ID " + commitID
+                            + " is ambiguous.");
+                    System.exit(0);
+                }
+                found = other;
+            }
+        }
+        if (found == null) {
+            System.out.println("No commit with that ID exists.");
+            System.exit(0);
+        }
+        return found;
     }
 
     /** Like log, except displays information about all commits
      * ever made. The order of the commits does not matter. */
     public void globalLog() {
-        for (File file: commitsDir.listFiles()) {
-            Commit commit = Utils.readObject(file, Commit.class);
+        for (File file: commitFiles()) {
+            Commit commit = Commit.readHeader(file);
             System.out.println("===");
             System.out.println("commit " + commit.compID());
             System.out.println("Date: " + commit.getTimestamp());
@@ -297,8 +506,8 @@ public class Gitlet {
      * @param message commit message */
     public void find(String message) {
         boolean failureCase = true;
-        for (File file: commitsDir.listFiles()) {
-            Commit commit = Utils.readObject(file, Commit.class);
+        for (File file: commitFiles()) {
+            Commit commit = Commit.readHeader(file);
             if (commit.getMessage().equals(message)) {
                 System.out.println(commit.compID());
                 failureCase = false;
@@ -319,12 +528,22 @@ public class Gitlet {
         }
         System.out.println("=== Branches ===");
         ArrayList<String> branchList = new ArrayList<String>();
+        Branch branch = Branch.read(curBranch, commitsDir);
         for (File file: branchFile.listFiles()) {
-            Branch branch = Utils.readObject(curBranch, Branch.class);
-            if (file.getName().equals(branch.getBranchName())) {
-                branchList.add("*" + file.getName());
+            ArrayList<String> names = new ArrayList<>();
+            if (file.isDirectory()) {
+                for (File remoteFile: file.listFiles()) {
+                    names.add(file.getName() + "/" + remoteFile.getName());
+                }
             } else {
-                branchList.add(file.getName());
+                names.add(file.getName());
+            }
+            for (String name: names) {
+                if (name.equals(branch.getBranchName())) {
+                    branchList.add("*" + name);
+                } else {
+                    branchList.add(name);
+                }
             }
         }
         branchList.sort(String.CASE_INSENSITIVE_ORDER);
@@ -333,48 +552,517 @@ public class Gitlet {
         }
         System.out.println();
 
+        Index index = readIndex();
         System.out.println("=== Staged Files ===");
-        for (File file: stagingArea.listFiles()) {
-            System.out.println(file.getName());
+        for (String name: index.getStaged().keySet()) {
+            System.out.println(name);
         }
         System.out.println();
 
         System.out.println("=== Removed Files ===");
-        for (File file: removingArea.listFiles()) {
-            System.out.println(file.getName());
+        for (String name: index.getRemoved()) {
+            System.out.println(name);
         }
         System.out.println();
 
+        head = branch.getHead();
+        Tree tracked = head.getBlobs();
+        TreeMap<String, String> working = workingFiles(new WorkTree(cwd))
+                .getIDs();
+        TreeMap<String, String> modified = new TreeMap<>();
+        Sparse sparse = Sparse.read(sparseFile);
+        for (int i = 0; i < tracked.size(); i += 1) {
+            String name = tracked.name(i);
+            if (index.getStaged().containsKey(name)
+                    || index.getRemoved().contains(name)) {
+                continue;
+            }
+            String id = working.get(name);
+            if (id == null) {
+                if (sparse.includes(name)) {
+                    modified.put(name, " (deleted)");
+                }
+            } else if (!id.equals(tracked.id(i))) {
+                modified.put(name, " (modified)");
+            }
+        }
+        for (Map.Entry<String, String> entry: index.getStaged().entrySet()) {
+            String id = working.get(entry.getKey());
+            if (id == null) {
+                if (sparse.includes(entry.getKey())) {
+                    modified.put(entry.getKey(), " (deleted)");
+                }
+            } else if (!id.equals(entry.getValue())) {
+                modified.put(entry.getKey(), " (modified)");
+            }
+        }
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (Map.Entry<String, String> entry: modified.entrySet()) {
+            System.out.println(entry.getKey() + entry.getValue());
+        }
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
+        for (String name: working.keySet()) {
+            if (!index.getStaged().containsKey(name)
+                    && (!tracked.contains(name)
+                    || index.getRemoved().contains(name))) {
+                System.out.println(name);
+            }
+        }
         System.out.println();
     }
+
+    /** Returns a snapshot of every file in the working directory that is
+     * not ignored, and saves it for next time. While a watcher is running,
+     * only the paths it logged since the last snapshot are looked at
+     * again. Otherwise every file is, though only files whose size or
+     * modification time changed are read. If the watcher does not answer,
+     * or lost track of events, every file is looked at.
+     * @param tree the working directory */
+    private Snapshot workingFiles(WorkTree tree) {
+        Snapshot old = Snapshot.read(snapshotFile);
+        String watcher = Watcher.running(watchDir);
+        boolean same = watcher != null && watcher.equals(old.getWatcher());
+        long from = same ? old.getOffset() : 0;
+        long end = watcher == null ? -1 : Watcher.sync(watchDir, from);
+        Snapshot result = null;
+        if (same && end >= 0) {
+            TreeSet<String> changed = new TreeSet<>(
+                    Watcher.changes(watchDir, from, end));
+            if (!changed.contains(Watcher.RESCAN)) {
+                result = old;
+                for (String name: changed) {
+                    Snapshot cache = result.removeUnder(name);
+                    result.putAll(tree.hash(tree.path(name), n -> true,
+                            null, cache));
+                }
+            }
+        }
+        if (result == null) {
+            result = tree.hash(cwd.toPath(), n -> true, null, old);
+        }
+        if (end >= 0) {
+            result.setWatcher(watcher, end);
+        } else {
+            result.setWatcher("", 0);
+        }
+        result.write(snapshotFile);
+        return result;
+    }
+
+    /** Watches the working directory for changes until stopped, so that
+     * status and add only look at the paths that changed. Exits if a
+     * watcher is already running.
+     * @throws IOException */
+    public void watch() throws IOException {
+        if (Watcher.running(watchDir) != null) {
+            System.out.println("A watcher is already running.");
+            System.exit(0);
+        }
+        new Watcher(cwd, watchDir).run();
+    }
+
+    /** Stops the running watcher. */
+    public void stopWatch() {
+        if (!Watcher.stop(watchDir)) {
+            System.out.println("No watcher is running.");
+        }
+    }
+
+    /** Keeps only the files matching the given patterns in the working
+     * directory (see Sparse), or every file if there are none. Files of
+     * the head commit that are newly included and missing are checked
+     * out, and files that are newly left out are deleted, unless they
+     * differ from the head commit. Commits still track every file.
+     * @param patterns the sparse-checkout patterns
+     * @throws IOException */
+    public void sparseCheckout(List<String> patterns) throws IOException {
+        Sparse old = Sparse.read(sparseFile);
+        Sparse sparse = new Sparse(patterns);
+        head = Branch.read(curBranch, commitsDir).getHead();
+        Tree tree = head.getBlobs();
+        for (int i = 0; i < tree.size(); i += 1) {
+            String name = tree.name(i);
+            File file = Utils.join(cwd, name);
+            boolean was = old.includes(name);
+            boolean is = sparse.includes(name);
+            if (is && !was && !file.exists()) {
+                writeFile(sparse, name, tree.id(i));
+            } else if (was && !is && file.isFile()
+                    && new Blob(file).getShaID().equals(tree.id(i))) {
+                deleteFile(name);
+            }
+        }
+        if (sparse.isEnabled()) {
+            sparse.write(sparseFile);
+        } else {
+            sparseFile.delete();
+        }
+    }
+
+    /** Loads the history described in the named file, or in the standard
+     * input if FILENAME is null, straight into the object store (see
+     * FastImport), and reports how much was imported and how fast.
+     * @param fileName name of the file, or null
+     * @throws IOException */
+    public void fastImport(String fileName) throws IOException {
+        if (!gitletDir.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        FastImport importer = new FastImport(commitsDir, blobDir, branchFile,
+                heads());
+        long start = System.nanoTime();
+        int commits;
+        try (InputStream in = fileName == null ? System.in
+                : Files.newInputStream(cwd.toPath().resolve(fileName))) {
+            commits = importer.run(in);
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+            System.exit(0);
+            return;
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println("Imported " + commits + " commits and "
+                + importer.getBlobCount() + " blobs ("
+                + importer.getBytes() / 1024 + " KB) in " + millis + " ms, "
+                + commits * 1000 / millis + " commits/s.");
+    }
+
+    /** Prints the sparse-checkout patterns, one per line. */
+    public void sparseList() {
+        for (String pattern: Sparse.read(sparseFile).getPatterns()) {
+            System.out.println(pattern);
+        }
+    }
+
+    /** Creates a linked worktree in the directory DIRNAME, with the
+     * branch BRANCHNAME checked out. The worktree has its own head
+     * pointer, index, snapshot and sparse-checkout patterns, kept in
+     * .gitlet/worktrees/[name], and a .gitlet file pointing there; the
+     * object store and the branches are shared, so only the files of
+     * the branch are written. A branch can only be checked out in one
+     * worktree at a time. A worktree is removed by deleting its
+     * directory; what is left of it in .gitlet/worktrees is deleted the
+     * next time a worktree is added.
+     * @param dirName path of the new worktree
+     * @param branchName name of the branch
+     * @throws IOException */
+    public void worktreeAdd(String dirName, String branchName)
+            throws IOException {
+        if (!gitletDir.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        File givenBranch = Utils.join(branchFile, branchName);
+        if (!givenBranch.exists()) {
+            System.out.println("No such branch exists.");
+            System.exit(0);
+        }
+        File elsewhere = Branch.read(curBranch, commitsDir).getBranchName()
+                .equals(branchName) ? cwd : checkedOutAt(branchName);
+        if (elsewhere != null) {
+            System.out.println("That branch is already checked out at "
+                    + elsewhere + ".");
+            System.exit(0);
+        }
+        File dir = cwd.toPath().resolve(dirName).normalize().toFile();
+        String[] inDir = dir.list();
+        if (dir.exists() && (inDir == null || inDir.length > 0)) {
+            System.out.println("A file or non-empty directory already "
+                    + "exists at " + dirName + ".");
+            System.exit(0);
+        }
+        pruneWorktrees();
+        File admin = Utils.join(worktreesDir, dir.getName());
+        for (int i = 1; admin.exists(); i += 1) {
+            admin = Utils.join(worktreesDir, dir.getName() + i);
+        }
+        admin.mkdirs();
+        dir.mkdirs();
+        File link = Utils.join(dir, ".gitlet");
+        Utils.writeContents(Utils.join(admin, LINK_FILE),
+                link.getAbsolutePath() + "\n");
+        Branch branch = Branch.read(givenBranch, commitsDir);
+        branch.write(Utils.join(admin, "curBranch"));
+        new Index().write(Utils.join(admin, "index"));
+        Utils.writeContents(link, GITDIR + admin.getAbsolutePath() + "\n");
+        new Gitlet(dir).checkoutTree(Tree.EMPTY, branch.getHead().getBlobs());
+    }
+
+    /** Prints every worktree, the main one first: its directory, the ID
+     * of its head commit and its branch. */
+    public void worktreeList() {
+        if (!gitletDir.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        for (Map.Entry<File, File> worktree: worktrees().entrySet()) {
+            Branch branch = Branch.read(Utils.join(worktree.getValue(),
+                    "curBranch"), commitsDir);
+            System.out.println(worktree.getKey() + " "
+                    + branch.getHead().compID() + " ["
+                    + branch.getBranchName() + "]");
+        }
+    }
+
+    /** Returns the Gitlet Directory of every worktree, by working
+     * directory: the main worktree first, then each linked worktree
+     * whose directory still exists. */
+    private LinkedHashMap<File, File> worktrees() {
+        LinkedHashMap<File, File> result = new LinkedHashMap<>();
+        result.put(commonDir.getAbsoluteFile().getParentFile(), commonDir);
+        File[] admins = worktreesDir.listFiles();
+        if (admins != null) {
+            Arrays.sort(admins);
+            for (File admin: admins) {
+                File link = linkOf(admin);
+                if (link != null) {
+                    result.put(link.getParentFile(), admin);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the .gitlet file of the linked worktree whose Gitlet
+     * Directory is ADMIN, or null if it no longer points back at ADMIN,
+     * because the worktree was deleted or moved.
+     * @param admin a directory in the Worktrees Directory */
+    private static File linkOf(File admin) {
+        File linkFile = Utils.join(admin, LINK_FILE);
+        if (!linkFile.isFile()) {
+            return null;
+        }
+        File link = new File(Utils.readContentsAsString(linkFile).trim());
+        if (!link.isFile()) {
+            return null;
+        }
+        String target = Utils.readContentsAsString(link).trim();
+        if (!target.startsWith(GITDIR) || !Paths.get(target.substring(
+                GITDIR.length())).equals(admin.getAbsoluteFile().toPath())) {
+            return null;
+        }
+        return link;
+    }
+
+    /** Deletes what is left in the Worktrees Directory of worktrees that
+     * no longer exist.
+     * @throws IOException */
+    private void pruneWorktrees() throws IOException {
+        File[] admins = worktreesDir.listFiles();
+        if (admins == null) {
+            return;
+        }
+        for (File admin: admins) {
+            if (linkOf(admin) == null) {
+                Watcher.stop(Utils.join(admin, "watch"));
+                try (Stream<Path> paths = Files.walk(admin.toPath())) {
+                    paths.sorted(Comparator.reverseOrder())
+                            .forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    /** Returns the working directory of another worktree that has the
+     * named branch checked out, or null if there is none.
+     * @param branchName name of the branch */
+    private File checkedOutAt(String branchName) {
+        for (Map.Entry<File, File> worktree: worktrees().entrySet()) {
+            File head = Utils.join(worktree.getValue(), "curBranch");
+            if (!worktree.getValue().getAbsoluteFile().equals(
+                    gitletDir.getAbsoluteFile()) && head.isFile()
+                    && Branch.read(head, commitsDir).getBranchName()
+                    .equals(branchName)) {
+                return worktree.getKey();
+            }
+        }
+        return null;
+    }
+
+    /** Returns the head pointer file of every worktree. */
+    private List<File> heads() {
+        ArrayList<File> result = new ArrayList<>();
+        for (File admin: worktrees().values()) {
+            result.add(Utils.join(admin, "curBranch"));
+        }
+        return result;
+    }
+
+    /** Returns every ref, by name: each branch, including remote and
+     * bundle branches, and each worktree's head pointer, named HEAD
+     * followed by the worktree's directory.
+     * @throws IOException */
+    private TreeMap<String, File> refs() throws IOException {
+        TreeMap<String, File> result = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(branchFile.toPath())) {
+            paths.filter(Files::isRegularFile).forEach(path ->
+                    result.put(branchFile.toPath().relativize(path)
+                            .toString().replace(File.separatorChar, '/'),
+                            path.toFile()));
+        }
+        for (Map.Entry<File, File> worktree: worktrees().entrySet()) {
+            result.put("HEAD " + worktree.getKey(),
+                    Utils.join(worktree.getValue(), "curBranch"));
+        }
+        return result;
+    }
+
+    /** Checks the object store (see Fsck): prints each problem found,
+     * then each dangling commit and blob, and then how much was checked
+     * and how fast. Blobs staged in a worktree's index are not dangling.
+     * @throws IOException */
+    public void fsck() throws IOException {
+        if (!gitletDir.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        ArrayList<String> staged = new ArrayList<>();
+        for (File admin: worktrees().values()) {
+            staged.addAll(Index.read(Utils.join(admin, "index"))
+                    .getStaged().values());
+        }
+        Fsck fsck = new Fsck(commitsDir, blobDir);
+        long start = System.nanoTime();
+        List<String> problems = fsck.check(refs(), staged);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), OUTPUT_BUFFER));
+        for (String problem: problems) {
+            out.println(problem);
+        }
+        for (String dangling: fsck.getDangling()) {
+            out.println(dangling);
+        }
+        long bytes = fsck.getBytes();
+        out.println("Checked " + fsck.getCommitCount() + " commits and "
+                + fsck.getBlobCount() + " blobs (" + bytes / 1024
+                + " KB) in " + millis + " ms, " + bytes * 1000 / millis
+                / 1024 + " KB/s; " + problems.size()
+                + (problems.size() == 1 ? " problem." : " problems."));
+        out.flush();
+    }
+
+    /** Rewrites every commit whose ID is not the SHA-1 of its stored
+     * bytes (see Commit), an initial commit made outside UTC, and every
+     * commit after one, in the current format, with the initial commit
+     * in UTC, and moves every ref onto the rewritten history. Parents
+     * are rewritten before their children, since a child's ID covers
+     * its parent's. The rewritten commits are stored before any ref
+     * moves, and the old ones are only deleted afterwards, children
+     * first, so running it again after an interruption finishes the
+     * job. Rewriting is deterministic, so two copies of a repository
+     * that are both migrated still share their history, but not with
+     * a copy that is not: even the initial commit gets a new ID, so push,
+     * fetch and pull refuse to work between the two until both have
+     * been migrated. The blame cache, which names commits, is cleared.
+     * @throws IOException */
+    public void migrate() throws IOException {
+        if (!gitletDir.exists()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+            System.exit(0);
+        }
+        HashMap<String, String> renamed = new HashMap<>();
+        ArrayList<String> order = new ArrayList<>();
+        String[] ids = commitsDir.list();
+        Arrays.sort(ids);
+        for (String id: ids) {
+            if (!id.endsWith(".tmp")) {
+                rewrite(id, renamed, order);
+            }
+        }
+        for (File ref: refs().values()) {
+            Branch branch = Branch.read(ref, commitsDir);
+            String id = renamed.get(branch.getHead().compID());
+            if (id != null && !id.equals(branch.getHead().compID())) {
+                branch.setHead(Commit.readHeader(
+                        Utils.join(commitsDir, id)));
+                branch.write(ref);
+            }
+        }
+        File[] cached = blameDir.listFiles();
+        if (cached != null) {
+            for (File file: cached) {
+                file.delete();
+            }
+        }
+        int count = 0;
+        for (int i = order.size() - 1; i >= 0; i -= 1) {
+            if (!renamed.get(order.get(i)).equals(order.get(i))) {
+                Utils.join(commitsDir, order.get(i)).delete();
+                count += 1;
+            }
+        }
+        System.out.println("Rewrote " + count + " of " + order.size()
+                + " commits.");
+        if (count > 0) {
+            System.out.println("Commit IDs have changed: migrate every "
+                    + "remote and copy of this repository as well.");
+        }
+    }
+
+    /** Rewrites the commit with the given ID, after its ancestors, unless
+     * it and its ancestors are already content-addressed, recording the
+     * new ID of each commit in RENAMED and adding each to ORDER once
+     * done.
+     * @param id ID of a commit
+     * @param renamed the new ID of each commit done, by old ID
+     * @param order the commits done, parents first
+     * @throws IOException */
+    private void rewrite(String id, HashMap<String, String> renamed,
+                         ArrayList<String> order) throws IOException {
+        ArrayDeque<Commit> pending = new ArrayDeque<>();
+        String next = id;
+        while (next != null && !renamed.containsKey(next)) {
+            Commit commit = Commit.read(Utils.join(commitsDir, next));
+            pending.push(commit);
+            next = commit.getParent();
+        }
+        String parent = next == null ? null : renamed.get(next);
+        while (!pending.isEmpty()) {
+            Commit commit = pending.pop();
+            String newID = commit.compID();
+            int offset = commit.getParent() == null && commit.getTime() == 0
+                    ? 0 : commit.getOffset();
+            if (!commit.isContentAddressed() || offset != commit.getOffset()
+                    || !Objects.equals(parent, commit.getParent())) {
+                Commit copy = new Commit(commit.getMessage(), parent,
+                        commit.getTime(), offset, commit.getBlobs());
+                byte[] stored = copy.encode();
+                newID = copy.compID();
+                File target = Utils.join(commitsDir, newID);
+                if (!target.exists()) {
+                    Path temp = Files.createTempFile(commonDir.toPath(),
+                            newID, ".tmp");
+                    Files.write(temp, stored);
+                    try (FileChannel channel = FileChannel.open(temp,
+                            StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    Files.move(temp, target.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            renamed.put(commit.compID(), newID);
+            order.add(commit.compID());
+            parent = newID;
+        }
+    }
+
     /** Takes the version of the file as it exists in the head commit,
      * the front of the current branch, and puts it in the working
      * directory, overwriting the version of the file that's already
      * there if there is one. The new version of the file is not staged.
      * @param fileName name of the file */
     public void checkout1(String fileName) throws IOException {
-        Branch branch = Utils.readObject(curBranch, Branch.class);
+        Branch branch = Branch.read(curBranch, commitsDir);
         head = branch.getHead();
-        String blob = "";
-        boolean doesExist = false;
-        for (Map.Entry<String, String> obj: head.getBlobs().entrySet()) {
-            if (obj.getKey().equals(fileName)) {
-                doesExist = true;
-                blob = obj.getValue();
-            }
-        }
-        if (doesExist) {
+        String blob = head.getBlobs().get(fileName);
+        if (blob != null) {
             File holder = Utils.join(cwd, fileName);
-            if (!holder.exists()) {
-                holder.createNewFile();
-            }
-            File temp = Utils.join(blobDir, blob);
-            Blob holderBlob = Utils.readObject(temp, Blob.class);
-            Utils.writeContents(holder, holderBlob.getBlobContents());
+            Blob.checkout(Utils.join(blobDir, blob), holder);
         } else {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
@@ -384,42 +1072,16 @@ public class Gitlet {
     /** Takes the version of the file as it exists in the commit with
      * the given id, and puts it in the working directory, overwriting
      * the version of the file that's already there if there is one.
-     * The new version of the file is not staged.
+     * The new version of the file is not staged. The id may be
+     * abbreviated, as long as only one commit starts with it.
      * @param commitID sha1ID of the commit
      * @param fileName name of the file */
     public void checkout2(String commitID, String fileName) throws IOException {
-        String tempID = commitID;
-        for (File file: commitsDir.listFiles()) {
-            String id = file.getName();
-            String subString = id.substring(0, commitID.length());
-            if (commitID.equals(subString)) {
-                tempID = id;
-            }
-        }
-
-        File commitFile = Utils.join(commitsDir, tempID);
-        if (!commitFile.exists()) {
-            System.out.println("No commit with that ID exists.");
-            System.exit(0);
-        }
-
-        String blob = "";
-        Commit commit = Utils.readObject(commitFile, Commit.class);
-        boolean doesExist = false;
-        for (Map.Entry<String, String> obj: commit.getBlobs().entrySet()) {
-            if (obj.getKey().equals(fileName)) {
-                doesExist = true;
-                blob = obj.getValue();
-            }
-        }
-        if (doesExist) {
+        Commit commit = Commit.read(findCommit(commitID));
+        String blob = commit.getBlobs().get(fileName);
+        if (blob != null) {
             File holder = Utils.join(cwd, fileName);
-            if (!holder.exists()) {
-                holder.createNewFile();
-            }
-            File temp = Utils.join(blobDir, blob);
-            Blob holderBlob = Utils.readObject(temp, Blob.class);
-            Utils.writeContents(holder, holderBlob.getBlobContents());
+            Blob.checkout(Utils.join(blobDir, blob), holder);
         } else {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
@@ -441,57 +1103,27 @@ public class Gitlet {
             System.out.println("No such branch exists.");
             System.exit(0);
         }
-        Branch branch = Utils.readObject(curBranch, Branch.class);
+        Branch branch = Branch.read(curBranch, commitsDir);
         if (branch.getBranchName().equals(branchName)) {
             System.out.println("No need to checkout the current branch.");
             System.exit(0);
         }
         head = branch.getHead();
-        Branch b = Utils.readObject(givenBranch, Branch.class);
-
-        untracked(b.getHead(), head);
-
-        for (Map.Entry<String, String> obj: b.getHead().getBlobs().entrySet()) {
-            File cwdPoint = Utils.join(cwd, obj.getKey());
-            if (cwdPoint.exists()) {
-                File blob = Utils.join(blobDir, obj.getValue());
-                Blob blobHolder = Utils.readObject(blob, Blob.class);
-                Utils.writeContents(cwdPoint, blobHolder.getBlobContents());
-            }
-        }
-
-        boolean containsCase = false;
-        for (Map.Entry<String, String> obj: b.getHead().getBlobs().entrySet()) {
-            for (Map.Entry<String, String> obj2: head.getBlobs().entrySet()) {
-                if (obj.getKey().equals(obj2.getKey())) {
-                    containsCase = true;
-                    break;
-                }
-            }
-            if (!containsCase) {
-                File holder = Utils.join(cwd, obj.getKey());
-                holder.delete();
-            }
-        }
-
-        Utils.writeObject(curBranch, b);
+        Branch b = Branch.read(givenBranch, commitsDir);
 
-        for (File file: cwd.listFiles()) {
-            file.delete();
+        File elsewhere = checkedOutAt(branchName);
+        if (elsewhere != null) {
+            System.out.println("That branch is checked out in another "
+                    + "worktree, at " + elsewhere + ".");
+            System.exit(0);
         }
+        untracked(b.getHead(), head);
 
-        for (String obj: b.getHead().getBlobs().keySet()) {
-            File temp = Utils.join(cwd, obj);
-            temp.createNewFile();
-            File blob = Utils.join(blobDir, b.getHead().getBlobs().get(obj));
-            Blob blobHolder = Utils.readObject(blob, Blob.class);
-            Utils.writeContents(temp, blobHolder.getBlobContents());
-        }
+        b.write(curBranch);
+        checkoutTree(head.getBlobs(), b.getHead().getBlobs());
 
         if (!branch.getBranchName().equals(branchName)) {
-            for (File file: stagingArea.listFiles()) {
-                file.delete();
-            }
+            new Index().write(indexFile);
         }
     }
 
@@ -499,22 +1131,63 @@ public class Gitlet {
      * @param commit a commit
      * @param commit2 a commit */
     public void untracked(Commit commit, Commit commit2) {
-        for (Map.Entry<String, String> obj: commit.getBlobs().entrySet()) {
-            File cwdPoint = Utils.join(cwd, obj.getKey());
-            boolean failureCase = false;
-            for (Map.Entry<String, String> ent: commit2.getBlobs().entrySet()) {
-                if (obj.getKey().equals(ent.getKey())) {
-                    failureCase = true;
-                    break;
-                }
-            }
-            if (!failureCase && cwdPoint.exists()) {
+        Sparse sparse = Sparse.read(sparseFile);
+        for (TreeDiff.Change change: new TreeDiff(commit2.getBlobs(),
+                commit.getBlobs())) {
+            File cwdPoint = Utils.join(cwd, change.getName());
+            if (change.getKind() == TreeDiff.Kind.ADDED && cwdPoint.exists()
+                    && sparse.includes(change.getName())) {
                 System.out.println("There is an untracked file in the "
                         + "way; delete it, or add and commit it first.");
                 System.exit(0);
             }
         }
     }
+
+    /** Replaces the files of tree FROM in the working directory with
+     * those of tree TO: files only FROM tracks are deleted, and every
+     * file TO tracks is checked out, unless the sparse-checkout patterns
+     * leave it out.
+     * @param from the files of the commit checked out now
+     * @param to the files of the commit to check out
+     * @throws IOException */
+    private void checkoutTree(Tree from, Tree to) throws IOException {
+        for (TreeDiff.Change change: new TreeDiff(from, to)) {
+            if (change.getKind() == TreeDiff.Kind.REMOVED) {
+                deleteFile(change.getName());
+            }
+        }
+        Sparse sparse = Sparse.read(sparseFile);
+        for (int i = 0; i < to.size(); i += 1) {
+            writeFile(sparse, to.name(i), to.id(i));
+        }
+    }
+
+    /** Deletes the named file from the working directory, along with any
+     * directories that leaves empty.
+     * @param name name of the file */
+    private void deleteFile(String name) {
+        File file = Utils.join(cwd, name);
+        file.delete();
+        File dir = file.getParentFile();
+        while (dir != null && !dir.equals(cwd) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Checks out the blob with the given ID as the named file, unless the
+     * sparse-checkout patterns leave the file out.
+     * @param sparse the sparse-checkout patterns
+     * @param name name of the file
+     * @param id ID of the blob
+     * @throws IOException */
+    private void writeFile(Sparse sparse, String name, String id)
+            throws IOException {
+        if (sparse.includes(name)) {
+            Blob.checkout(Utils.join(blobDir, id), Utils.join(cwd, name));
+        }
+    }
+
     /** Creates a new branch with the given name, and points it at the
      * current head node. A branch is nothing more than a name for a
      * reference (a SHA-1 identifier) to a commit node. This command does
@@ -529,12 +1202,12 @@ public class Gitlet {
                 System.exit(0);
             }
         }
-        Branch branch = Utils.readObject(curBranch, Branch.class);
+        Branch branch = Branch.read(curBranch, commitsDir);
         Branch newBranch = new Branch(branchName);
         newBranch.setHead(branch.getHead());
         File newFile = Utils.join(branchFile, branchName);
         newFile.createNewFile();
-        Utils.writeObject(newFile, newBranch);
+        newBranch.write(newFile);
     }
 
     /** Deletes the branch with the given name. This only means to delete the
@@ -548,11 +1221,16 @@ public class Gitlet {
             System.exit(0);
         }
 
-        Branch branchHold = Utils.readObject(curBranch, Branch.class);
+        Branch branchHold = Branch.read(curBranch, commitsDir);
         if (branchName.equals(branchHold.getBranchName())) {
             System.out.println("Cannot remove the current branch.");
             System.exit(0);
         }
+        if (checkedOutAt(branchName) != null) {
+            System.out.println("Cannot remove a branch checked out in "
+                    + "another worktree.");
+            System.exit(0);
+        }
 
         givenBranch.delete();
     }
@@ -571,56 +1249,49 @@ public class Gitlet {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        Branch branchHolder = Utils.readObject(curBranch, Branch.class);
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
         head = branchHolder.getHead();
-        Commit current = Utils.readObject(commitPoint, Commit.class);
-        for (String file: current.getBlobs().keySet()) {
-            File cwdPoint = Utils.join(cwd, file);
-            boolean inside = false;
-            for (String file2: head.getBlobs().keySet()) {
-                if (file.equals(file2)) {
-                    inside = true;
-                    break;
-                }
-            }
-            if (cwdPoint.exists() && !inside) {
-                System.out.println("There is an untracked file in the "
-                        + "way; delete it, or add and commit it first.");
-                System.exit(0);
+        Commit current = Commit.read(commitPoint);
+        untracked(current, head);
+        checkoutTree(head.getBlobs(), current.getBlobs());
+        new Index().write(indexFile);
+
+        branchHolder.setHead(current);
+        branchHolder.write(curBranch);
+
+        for (File file: branchFile.listFiles()) {
+            if (file.getName().equals(branchHolder.getBranchName())) {
+                branchHolder.write(file);
             }
         }
+    }
 
-        for (File file: cwd.listFiles()) {
-            file.delete();
-        }
-        for (String obj: current.getBlobs().keySet()) {
-            File temp = Utils.join(cwd, obj);
-            temp.createNewFile();
-            File blob = Utils.join(blobDir, current.getBlobs().get(obj));
-            Blob blobHolder = Utils.readObject(blob, Blob.class);
-            Utils.writeContents(temp, blobHolder.getBlobContents());
+    /** Returns the staging area, first moving the staging and removing
+     * directories of older versions of Gitlet into the index. */
+    private Index readIndex() {
+        if (!stagingArea.exists()) {
+            return Index.read(indexFile);
         }
+        Index index = new Index();
         for (File file: stagingArea.listFiles()) {
+            Blob blob = new Blob(file);
+            blob.save(blobDir);
+            index.stage(file.getName(), blob.getShaID());
             file.delete();
         }
         for (File file: removingArea.listFiles()) {
+            index.remove(file.getName());
             file.delete();
         }
-
-        branchHolder.setHead(current);
-        Utils.writeObject(curBranch, branchHolder);
-
-        for (File file: branchFile.listFiles()) {
-            if (file.getName().equals(branchHolder.getBranchName())) {
-                Utils.writeObject(file, branchHolder);
-            }
-        }
+        index.write(indexFile);
+        stagingArea.delete();
+        removingArea.delete();
+        return index;
     }
 
     /** Handles the error case when there are uncommitted changes. */
     public void uncommitted() {
-        if (stagingArea.listFiles().length != 0
-                || removingArea.listFiles().length != 0) {
+        if (!readIndex().isEmpty()) {
             System.out.println("You have uncommitted changes");
             System.exit(0);
         }
@@ -641,15 +1312,15 @@ public class Gitlet {
         uncommitted();
         File branch = Utils.join(branchFile, branchName);
         doesNotExist(branch);
-        Branch currentBranch = Utils.readObject(curBranch, Branch.class);
+        Branch currentBranch = Branch.read(curBranch, commitsDir);
         if (currentBranch.getBranchName().equals(branchName)) {
             System.out.println("Cannot merge a branch with itself.");
             System.exit(0);
         }
         head = currentBranch.getHead();
-        Branch holding = Utils.readObject(branch, Branch.class);
+        Branch holding = Branch.read(branch, commitsDir);
         File pointer = Utils.join(commitsDir, holding.getHead().compID());
-        Commit newC = Utils.readObject(pointer, Commit.class);
+        Commit newC = Commit.read(pointer);
         untracked(newC, head);
         Commit splitCommit = getSplitPoint(head, holding.getHead());
         if (holding.getHead().compID().equals(splitCommit.compID())) {
@@ -662,57 +1333,276 @@ public class Gitlet {
             System.out.println("Current branch fast-forwarded.");
             System.exit(0);
         }
-        for (Map.Entry<String, String> obj: splitCommit.getBlobs().entrySet()) {
-            File split = Utils.join(blobDir, obj.getValue());
-            Blob splitBlob = Utils.readObject(split, Blob.class);
-            if (newC.getBlobs().containsKey(obj.getKey())
-                    && head.getBlobs().containsKey(obj.getKey())) {
-                File h = Utils.join(blobDir, head.getBlobs().get(obj.getKey()));
-                Blob hBlob = Utils.readObject(h, Blob.class);
-                File b = Utils.join(blobDir, newC.getBlobs().get(obj.getKey()));
-                Blob bBlob = Utils.readObject(b, Blob.class);
-                if (!bBlob.compare(splitBlob) && hBlob.compare(splitBlob)) {
-                    File stage = Utils.join(stagingArea, obj.getKey());
-                    stage.createNewFile();
-                    checkout2(newC.compID(), obj.getKey());
+        Index index = new Index();
+        Tree current = head.getBlobs();
+        Sparse sparse = Sparse.read(sparseFile);
+        for (TreeDiff.Change change: new TreeDiff(splitCommit.getBlobs(),
+                newC.getBlobs())) {
+            String name = change.getName();
+            String hBlob = current.get(name);
+            if (change.getKind() == TreeDiff.Kind.ADDED) {
+                if (hBlob == null) {
+                    index.stage(name, change.getNewID());
+                    writeFile(sparse, name, change.getNewID());
                 }
-            } else if (!newC.getBlobs().containsKey(obj.getKey())
-                    && head.getBlobs().containsKey(obj.getKey())) {
-                File h = Utils.join(blobDir, head.getBlobs().get(obj.getKey()));
-                Blob hBlob = Utils.readObject(h, Blob.class);
-                if (hBlob.compare(splitBlob)) {
-                    rm(obj.getKey());
-                }
-            }
-        }
-        for (Map.Entry<String, String> obj: newC.getBlobs().entrySet()) {
-            if (!splitCommit.getBlobs().containsKey(obj.getKey())
-                    && !head.getBlobs().containsKey(obj.getKey())) {
-                File stage = Utils.join(stagingArea, obj.getKey());
-                stage.createNewFile();
-                checkout2(newC.compID(), obj.getKey());
+            } else if (!change.getOldID().equals(hBlob)) {
+                continue;
+            } else if (change.getKind() == TreeDiff.Kind.MODIFIED) {
+                index.stage(name, change.getNewID());
+                writeFile(sparse, name, change.getNewID());
+            } else {
+                index.remove(name);
+                deleteFile(name);
             }
         }
+        index.write(indexFile);
         commit("Merged " + branchName + " into "
                 + currentBranch.getBranchName() + ".");
     }
 
-    /** Returns the split point commit object between two commits.
+    /** Saves the given remote directory under the given remote name.
+     * Attempts to push or pull from the remote will then attempt to use
+     * that .gitlet directory.
+     * @param remoteName name of the remote
+     * @param remoteDir path to the remote's .gitlet directory */
+    public void addRemote(String remoteName, String remoteDir) {
+        if (!remotesDir.exists()) {
+            remotesDir.mkdir();
+        }
+        File remote = Utils.join(remotesDir, remoteName);
+        if (remote.exists()) {
+            System.out.println("A remote with that name already exists.");
+            System.exit(0);
+        }
+        Utils.writeContents(remote, remoteDir.replace("/", File.separator));
+    }
+
+    /** Removes information associated with the given remote name.
+     * @param remoteName name of the remote */
+    public void rmRemote(String remoteName) {
+        File remote = Utils.join(remotesDir, remoteName);
+        if (!remote.exists()) {
+            System.out.println("A remote with that name does not exist.");
+            System.exit(0);
+        }
+        remote.delete();
+    }
+
+    /** Appends the current branch's commits to the end of the given branch
+     * at the given remote, then moves the remote branch to point at the
+     * head of the current branch. Only the commits and blobs the remote
+     * does not have yet are sent. If the remote branch's head is not in
+     * the history of the current local head, the push is refused.
+     * @param remoteName name of the remote
+     * @param remoteBranch name of the remote branch
+     * @throws IOException */
+    public void push(String remoteName, String remoteBranch)
+            throws IOException {
+        Remote remote = getRemote(remoteName);
+        Branch branchHolder = Branch.read(curBranch, commitsDir);
+        head = branchHolder.getHead();
+        Branch target = remote.readBranch(remoteBranch);
+        if (target != null
+                && !inHistory(target.getHead().compID(), head)) {
+            System.out.println("Please pull down remote changes before "
+                    + "pushing.");
+            System.exit(0);
+        }
+        try {
+            Remote.transfer(commitsDir, blobDir, remote.getCommitsDir(),
+                    remote.getBlobDir(), head, remote.readHead());
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+            System.exit(0);
+        }
+        if (target == null) {
+            target = new Branch(remoteBranch);
+        }
+        target.setHead(head);
+        remote.writeBranch(target);
+    }
+
+    /** Brings down commits from the remote Gitlet repository into the
+     * local Gitlet repository, into a branch named
+     * [remote name]/[remote branch name] in the local .gitlet. Only the
+     * commits and blobs this repository does not have yet are copied.
+     * @param remoteName name of the remote
+     * @param remoteBranch name of the remote branch
+     * @throws IOException */
+    public void fetch(String remoteName, String remoteBranch)
+            throws IOException {
+        Remote remote = getRemote(remoteName);
+        Branch source = remote.readBranch(remoteBranch);
+        if (source == null) {
+            System.out.println("That remote does not have that branch.");
+            System.exit(0);
+        }
+        try {
+            Remote.transfer(remote.getCommitsDir(), remote.getBlobDir(),
+                    commitsDir, blobDir, source.getHead(),
+                    Branch.read(curBranch, commitsDir).getHead());
+        } catch (GitletException e) {
+            System.out.println(e.getMessage());
+            System.exit(0);
+        }
+        File remoteBranches = Utils.join(branchFile, remoteName);
+        if (!remoteBranches.exists()) {
+            remoteBranches.mkdir();
+        }
+        Branch fetched = new Branch(remoteName + "/" + remoteBranch);
+        fetched.setHead(source.getHead());
+        fetched.write(Utils.join(remoteBranches, remoteBranch));
+    }
+
+    /** Fetches the branch [remote name]/[remote branch name] as for the
+     * fetch command, and then merges that fetch into the current branch.
+     * @param remoteName name of the remote
+     * @param remoteBranch name of the remote branch
+     * @throws IOException */
+    public void pull(String remoteName, String remoteBranch)
+            throws IOException {
+        fetch(remoteName, remoteBranch);
+        merge(remoteName + "/" + remoteBranch);
+    }
+
+    /** Writes the commits and blobs reachable from the given branches to
+     * a single bundle file, which can be unbundled into another repository.
+     * If a base commit is given, only the history after it is included.
+     * @param fileName name of the bundle file
+     * @param baseID ID of the base commit, or null
+     * @param branchNames names of the branches to include
+     * @throws IOException */
+    public void bundle(String fileName, String baseID, List<String> branchNames)
+            throws IOException {
+        LinkedHashMap<String, Commit> heads = new LinkedHashMap<>();
+        for (String branchName: branchNames) {
+            File branch = Utils.join(branchFile, branchName);
+            doesNotExist(branch);
+            heads.put(branchName,
+                    Branch.read(branch, commitsDir).getHead());
+        }
+        Commit base = null;
+        if (baseID != null) {
+            File commitFile = Utils.join(commitsDir, baseID);
+            if (!commitFile.exists()) {
+                System.out.println("No commit with that id exists.");
+                System.exit(0);
+            }
+            base = Commit.read(commitFile);
+        }
+        new Bundle(commitsDir, blobDir).create(
+                cwd.toPath().resolve(fileName).toFile(), heads, base);
+    }
+
+    /** Reads the commits and blobs in the given bundle file into this
+     * repository. Each branch in the bundle becomes a branch named
+     * bundle/[branch name], which can then be checked out or merged.
+     * A bundle that is truncated or damaged is reported as corrupt, and
+     * no branch is made from it.
+     * @param fileName name of the bundle file
+     * @throws IOException */
+    public void unbundle(String fileName) throws IOException {
+        File file = cwd.toPath().resolve(fileName).toFile();
+        if (!file.exists()) {
+            System.out.println("File does not exist.");
+            System.exit(0);
+        }
+        ArrayList<Branch> branches = new ArrayList<>();
+        try {
+            Map<String, String> heads =
+                    new Bundle(commitsDir, blobDir).unbundle(file);
+            for (Map.Entry<String, String> entry: heads.entrySet()) {
+                Branch branch = new Branch("bundle/" + entry.getKey());
+                File commitFile = Utils.join(commitsDir, entry.getValue());
+                branch.setHead(Commit.read(commitFile));
+                branches.add(branch);
+            }
+        } catch (GitletException | EOFException | ZipException e) {
+            System.out.println("Bundle is corrupt.");
+            System.exit(0);
+        }
+        File bundleBranches = Utils.join(branchFile, "bundle");
+        if (!bundleBranches.exists()) {
+            bundleBranches.mkdir();
+        }
+        for (Branch branch: branches) {
+            branch.write(Utils.join(branchFile, branch.getBranchName()));
+        }
+    }
+
+    /** Returns the remote saved under the given name, exiting if there is
+     * no such remote or its directory does not exist.
+     * @param remoteName name of the remote */
+    private Remote getRemote(String remoteName) {
+        File remoteFile = Utils.join(remotesDir, remoteName);
+        if (!remoteFile.exists()) {
+            System.out.println("A remote with that name does not exist.");
+            System.exit(0);
+        }
+        Remote remote = new Remote(
+                new File(Utils.readContentsAsString(remoteFile)));
+        if (!remote.exists()) {
+            System.out.println("Remote directory not found.");
+            System.exit(0);
+        }
+        return remote;
+    }
+
+    /** Returns whether the commit with the given ID is in the history
+     * of the given commit.
+     * @param commitID sha1 ID of a commit
+     * @param commit a commit */
+    private boolean inHistory(String commitID, Commit commit) {
+        try (Ancestry history = new Ancestry(commitsDir, commit)) {
+            while (history.hasNext()) {
+                if (history.next().compID().equals(commitID)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the split point commit object between two commits: their
+     * latest common ancestor. Both histories are walked back one commit
+     * at a time in turn, each read ahead in the background; the first
+     * commit reached that the other walk has already passed is the split
+     * point, so neither history is read further back than needed.
      * @param other a commit
      * @param current a commit */
     public Commit getSplitPoint(Commit other, Commit current) {
-        Commit splitPoint;
-        while (true) {
-            if (other.compID().equals(current.compID())) {
-                splitPoint = other;
-                break;
-            } else {
-                File otherNext = Utils.join(commitsDir, other.getParent());
-                other = Utils.readObject(otherNext, Commit.class);
-                File currentNext = Utils.join(commitsDir, current.getParent());
-                current = Utils.readObject(currentNext, Commit.class);
+        HashSet<String> otherSeen = new HashSet<>();
+        HashSet<String> currentSeen = new HashSet<>();
+        String found = null;
+        try (Ancestry otherHistory = new Ancestry(commitsDir, other);
+             Ancestry currentHistory = new Ancestry(commitsDir, current)) {
+            while (found == null && (otherHistory.hasNext()
+                    || currentHistory.hasNext())) {
+                found = step(otherHistory, otherSeen, currentSeen);
+                if (found == null) {
+                    found = step(currentHistory, currentSeen, otherSeen);
+                }
             }
         }
-        return splitPoint;
+        if (found == null) {
+            throw new GitletException("No common ancestor.");
+        }
+        return Commit.read(Utils.join(commitsDir, found));
+    }
+
+    /** Moves HISTORY back one commit, if it has any left, recording it in
+     * SEEN. Returns its ID if OTHERSEEN already has it, and null
+     * otherwise.
+     * @param history one walk
+     * @param seen the commits that walk has passed
+     * @param otherSeen the commits the other walk has passed */
+    private static String step(Ancestry history, HashSet<String> seen,
+                               HashSet<String> otherSeen) {
+        if (!history.hasNext()) {
+            return null;
+        }
+        String id = history.next().compID();
+        seen.add(id);
+        return otherSeen.contains(id) ? id : null;
     }
 }
@@ -7,6 +7,10 @@ package gitlet;
 class GitletException extends RuntimeException {
 
 
+    /** Serialization version, pinned to the one Java computed for this
+     *  class. */
+    private static final long serialVersionUID = -1679980020093532642L;
+
     /** A GitletException with no message. */
     GitletException() {
         super();
@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Represents the staging area. Files staged for addition are recorded
+ * by the ID of their blob, which is written to the blob directory when
+ * the file is added, and files staged for removal by their name. The
+ * whole staging area is stored in a single index file.
+ * @author Ryan Gomes
+ */
+public class Index {
+
+    /** An empty staging area. */
+    public Index() {
+        staged = new TreeMap<>();
+        removed = new TreeSet<>();
+    }
+
+    /** Returns the staging area stored in FILE, or an empty one if FILE
+     * does not exist.
+     * @param file the index file */
+    public static Index read(File file) {
+        Index index = new Index();
+        if (!file.exists()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("unknown index format");
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i += 1) {
+                String name = Codec.readString(in);
+                index.staged.put(name, Codec.readID(in));
+            }
+            size = in.readInt();
+            for (int i = 0; i < size; i += 1) {
+                index.removed.add(Codec.readString(in));
+            }
+        } catch (IOException e) {
+            throw new GitletException("Corrupt index.");
+        }
+        return index;
+    }
+
+    /** Saves the staging area to FILE.
+     * @param file the index file */
+    public void write(File file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(staged.size());
+            for (Map.Entry<String, String> entry: staged.entrySet()) {
+                Codec.writeString(out, entry.getKey());
+                Codec.writeID(out, entry.getValue());
+            }
+            out.writeInt(removed.size());
+            for (String name: removed) {
+                Codec.writeString(out, name);
+            }
+        } catch (IOException e) {
+            throw new GitletException("Internal error encoding index.");
+        }
+        Utils.writeContents(file, bytes.toByteArray());
+    }
+
+    /** Return the blob IDs of the files staged for addition, by name. */
+    public TreeMap<String, String> getStaged() {
+        return staged;
+    }
+
+    /** Return the names of the files staged for removal. */
+    public TreeSet<String> getRemoved() {
+        return removed;
+    }
+
+    /** Stages the file for addition with the given blob, and no longer
+     * for removal.
+     * @param fileName name of the file
+     * @param blobID sha1 ID of the file's blob */
+    public void stage(String fileName, String blobID) {
+        removed.remove(fileName);
+        staged.put(fileName, blobID);
+    }
+
+    /** Unstages the file for addition, returning whether it was staged.
+     * @param fileName name of the file */
+    public boolean unstage(String fileName) {
+        return staged.remove(fileName) != null;
+    }
+
+    /** Stages the file for removal, and no longer for addition.
+     * @param fileName name of the file */
+    public void remove(String fileName) {
+        staged.remove(fileName);
+        removed.add(fileName);
+    }
+
+    /** Return whether nothing is staged. */
+    public boolean isEmpty() {
+        return staged.isEmpty() && removed.isEmpty();
+    }
+
+    /** Unstages everything. */
+    public void clear() {
+        staged.clear();
+        removed.clear();
+    }
+
+    /** Marks the start of a stored index. */
+    private static final int MAGIC = 0x474c4900;
+
+    /** Version of the stored index format. */
+    private static final byte VERSION = 1;
+
+    /** Blob IDs of the files staged for addition, by name. */
+    private TreeMap<String, String> staged;
+
+    /** Names of the files staged for removal. */
+    private TreeSet<String> removed;
+}
@@ -1,6 +1,12 @@
 package gitlet;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Ryan Gomes
@@ -20,7 +26,11 @@ public class Main {
             System.exit(0);
         }
         if (args[0].equals("add")) {
-            newGitletObj.add(args[1]);
+            if (args.length < 2) {
+                System.out.println("Incorrect operands.");
+                System.exit(0);
+            }
+            newGitletObj.add(Arrays.copyOfRange(args, 1, args.length));
             System.exit(0);
         }
         if (args[0].equals("commit")) {
@@ -32,7 +42,7 @@ public class Main {
             System.exit(0);
         }
         if (args[0].equals("log")) {
-            newGitletObj.log();
+            log(newGitletObj, args);
             System.exit(0);
         }
         if (args[0].equals("global-log")) {
@@ -43,10 +53,54 @@ public class Main {
             newGitletObj.find(args[1]);
             System.exit(0);
         }
+        if (args[0].equals("blame")) {
+            newGitletObj.blame(args[1]);
+            System.exit(0);
+        }
+        if (args[0].equals("diff-tree")) {
+            if (args.length != 3) {
+                System.out.println("Incorrect operands.");
+                System.exit(0);
+            }
+            newGitletObj.diffTree(args[1], args[2]);
+            System.exit(0);
+        }
         if (args[0].equals("status")) {
             newGitletObj.status();
             System.exit(0);
         }
+        if (args[0].equals("fsck")) {
+            newGitletObj.fsck();
+            System.exit(0);
+        }
+        if (args[0].equals("migrate")) {
+            newGitletObj.migrate();
+            System.exit(0);
+        }
+        if (args[0].equals("fast-import")) {
+            if (args.length > 2) {
+                System.out.println("Incorrect operands.");
+                System.exit(0);
+            }
+            newGitletObj.fastImport(args.length == 2 ? args[1] : null);
+            System.exit(0);
+        }
+        if (args[0].equals("sparse-checkout")) {
+            sparseCheckout(newGitletObj, args);
+            System.exit(0);
+        }
+        if (args[0].equals("worktree")) {
+            worktree(newGitletObj, args);
+            System.exit(0);
+        }
+        if (args[0].equals("watch")) {
+            if (args.length == 2 && args[1].equals("stop")) {
+                newGitletObj.stopWatch();
+            } else {
+                newGitletObj.watch();
+            }
+            System.exit(0);
+        }
         checkout(newGitletObj, args);
         if (args[0].equals("branch")) {
             newGitletObj.branch(args[1]);
@@ -64,9 +118,82 @@ public class Main {
             newGitletObj.merge(args[1]);
             System.exit(0);
         }
+        remote(newGitletObj, args);
+        if (args[0].equals("bundle")) {
+            bundle(newGitletObj, args);
+            System.exit(0);
+        }
         System.out.println("No command with that name exists.");
     }
 
+    /** Helper method for log, which takes the options -n [count] and
+     * --since [date], where the date is yyyy-MM-dd or yyyy-MM-ddTHH:mm
+     * in local time.
+     * @param t gitlet object
+     * @param args arguments */
+    private static void log(Gitlet t, String... args) {
+        int limit = Integer.MAX_VALUE;
+        long since = Long.MIN_VALUE;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (args[i].equals("-n") && i + 1 < args.length) {
+                    limit = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--since") && i + 1 < args.length) {
+                    since = parseDate(args[i + 1]);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        t.log(limit, since);
+    }
+
+    /** Returns the time, in milliseconds, of a local date or date and
+     * time.
+     * @param date yyyy-MM-dd or yyyy-MM-ddTHH:mm[:ss] */
+    private static long parseDate(String date) {
+        LocalDateTime time = date.contains("T") ? LocalDateTime.parse(date)
+                : LocalDate.parse(date).atStartOfDay();
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** Helper method for sparse-checkout, which takes set [pattern]...,
+     * list or disable.
+     * @param t gitlet object
+     * @param args arguments
+     * @throws IOException */
+    private static void sparseCheckout(Gitlet t, String... args)
+            throws IOException {
+        if (args.length >= 3 && args[1].equals("set")) {
+            t.sparseCheckout(Arrays.asList(args).subList(2, args.length));
+        } else if (args.length == 2 && args[1].equals("list")) {
+            t.sparseList();
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            t.sparseCheckout(new ArrayList<>());
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
+    /** Helper method for worktree, which takes add [directory] [branch]
+     * or list.
+     * @param t gitlet object
+     * @param args arguments
+     * @throws IOException */
+    private static void worktree(Gitlet t, String... args)
+            throws IOException {
+        if (args.length == 4 && args[1].equals("add")) {
+            t.worktreeAdd(args[2], args[3]);
+        } else if (args.length == 2 && args[1].equals("list")) {
+            t.worktreeList();
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
     /** Helper method for checkout.
      * @param t gitlet object
      * @param args arguments */
@@ -84,4 +211,44 @@ public class Main {
             System.exit(0);
         }
     }
+
+    /** Helper method for the remote commands.
+     * @param t gitlet object
+     * @param args arguments */
+    private static void remote(Gitlet t, String... args) throws IOException {
+        if (args[0].equals("add-remote")) {
+            t.addRemote(args[1], args[2]);
+        } else if (args[0].equals("rm-remote")) {
+            t.rmRemote(args[1]);
+        } else if (args[0].equals("push")) {
+            t.push(args[1], args[2]);
+        } else if (args[0].equals("fetch")) {
+            t.fetch(args[1], args[2]);
+        } else if (args[0].equals("pull")) {
+            t.pull(args[1], args[2]);
+        } else {
+            return;
+        }
+        System.exit(0);
+    }
+
+    /** Helper method for bundle.
+     * @param t gitlet object
+     * @param args arguments */
+    private static void bundle(Gitlet t, String... args) throws IOException {
+        if (args.length == 3 && args[1].equals("unbundle")) {
+            t.unbundle(args[2]);
+        } else if (args.length > 3 && args[1].equals("create")) {
+            int first = 3;
+            String base = null;
+            if (args[3].equals("--base") && args.length > 5) {
+                base = args[4];
+                first = 5;
+            }
+            t.bundle(args[2], base,
+                    Arrays.asList(args).subList(first, args.length));
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
 }
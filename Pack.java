@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+/** A stream of commit and blob objects, used to move objects from one
+ * object store to another in a single pass. Each object is written as
+ * its type, its ID, its length and its stored bytes, and is checked
+ * against its ID as it is read back. Blobs are sent before the commits
+ * that refer to them, and commits oldest first, so a commit only ever
+ * appears in the receiving store once everything it refers to is there.
+ * @author Ryan Gomes
+ */
+public class Pack {
+
+    /** Writes the given objects to DATA. Buffering is left to the caller.
+     * @param data the stream to write to
+     * @param commitsDir the commits directory to read commits from
+     * @param blobDir the blob directory to read blobs from
+     * @param commits IDs of the commits to send, oldest first
+     * @param blobs IDs of the blobs to send
+     * @throws IOException */
+    public static void write(DataOutputStream data, File commitsDir,
+                             File blobDir, Collection<String> commits,
+                             Collection<String> blobs) throws IOException {
+        data.writeInt(MAGIC);
+        for (String blob: blobs) {
+            writeEntry(data, BLOB, blob, Utils.join(blobDir, blob));
+        }
+        for (String commit: commits) {
+            writeEntry(data, COMMIT, commit, Utils.join(commitsDir, commit));
+        }
+        data.writeByte(END);
+    }
+
+    /** Reads objects from DATA until the end of the pack, verifying each
+     * one and storing those that are not already present. Each object is
+     * written to a temporary file beside the object directories, rather
+     * than in them, and then moved into place. Returns the number of
+     * objects stored. Nothing past the end of the pack is read,
+     * so DATA should not buffer ahead of whatever follows it.
+     * @param data the stream to read from
+     * @param commitsDir the commits directory to store commits in
+     * @param blobDir the blob directory to store blobs in
+     * @throws IOException */
+    public static int read(DataInputStream data, File commitsDir,
+                           File blobDir) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new GitletException("Not a gitlet pack.");
+        }
+        int stored = 0;
+        while (true) {
+            byte type = data.readByte();
+            if (type == END) {
+                return stored;
+            }
+            String id = data.readUTF();
+            byte[] contents = new byte[data.readInt()];
+            data.readFully(contents);
+            File dir;
+            if (type == BLOB) {
+                dir = blobDir;
+                if (!Utils.sha1(Blob.contents(contents, id)).equals(id)) {
+                    throw new GitletException("Corrupt blob " + id + ".");
+                }
+            } else if (type == COMMIT) {
+                dir = commitsDir;
+                if (!Commit.idOf(contents).equals(id)) {
+                    throw new GitletException("Corrupt commit " + id + ".");
+                }
+            } else {
+                throw new GitletException("Corrupt pack.");
+            }
+            File target = Utils.join(dir, id);
+            if (!target.exists()) {
+                Path temp = Files.createTempFile(
+                        dir.getParentFile().toPath(), id, ".tmp");
+                Files.write(temp, contents);
+                Files.move(temp, target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+                stored += 1;
+            }
+        }
+    }
+
+    /** Writes a single object.
+     * @param data the stream to write to
+     * @param type type of the object
+     * @param id ID of the object
+     * @param file the file the object is stored in
+     * @throws IOException */
+    private static void writeEntry(DataOutputStream data, byte type,
+                                   String id, File file) throws IOException {
+        byte[] contents = Files.readAllBytes(file.toPath());
+        data.writeByte(type);
+        data.writeUTF(id);
+        data.writeInt(contents.length);
+        data.write(contents);
+    }
+
+    /** Marks the start of a pack. */
+    private static final int MAGIC = 0x474c5031;
+
+    /** Type of a blob entry. */
+    private static final byte BLOB = 'b';
+
+    /** Type of a commit entry. */
+    private static final byte COMMIT = 'c';
+
+    /** Marks the end of a pack. */
+    private static final byte END = 0;
+}
@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+/** Represents another Gitlet repository on the local file system.
+ * @author Ryan Gomes
+ */
+public class Remote {
+
+    /** A remote.
+     * @param dir the .gitlet directory of the remote repository */
+    public Remote(File dir) {
+        gitletDir = dir;
+        branchFile = Utils.join(dir, "branch");
+        curBranch = Utils.join(dir, "curBranch");
+        blobDir = Utils.join(dir, ".blob");
+        commitsDir = Utils.join(dir, ".commits");
+    }
+
+    /** Return whether the remote repository exists. */
+    public boolean exists() {
+        return gitletDir.isDirectory();
+    }
+
+    /** Return the commits directory of the remote. */
+    public File getCommitsDir() {
+        return commitsDir;
+    }
+
+    /** Return the blob directory of the remote. */
+    public File getBlobDir() {
+        return blobDir;
+    }
+
+    /** Return the head commit of the remote's main worktree. */
+    public Commit readHead() {
+        return Branch.read(curBranch, commitsDir).getHead();
+    }
+
+    /** Return the remote's branch with the given name, or null if
+     * it has no such branch.
+     * @param branchName name of the branch */
+    public Branch readBranch(String branchName) {
+        File file = Utils.join(branchFile, branchName);
+        if (!file.exists()) {
+            return null;
+        }
+        return Branch.read(file, commitsDir);
+    }
+
+    /** Saves the branch in the remote, moving the head pointer of the
+     * remote's main worktree, or of whichever of its linked worktrees has
+     * the branch checked out, along with it.
+     * @param branch a branch */
+    public void writeBranch(Branch branch) {
+        branch.write(Utils.join(branchFile, branch.getBranchName()));
+        ArrayList<File> heads = new ArrayList<>();
+        heads.add(curBranch);
+        File[] worktrees = Utils.join(gitletDir, "worktrees").listFiles();
+        if (worktrees != null) {
+            for (File worktree: worktrees) {
+                heads.add(Utils.join(worktree, "curBranch"));
+            }
+        }
+        for (File head: heads) {
+            if (head.isFile() && Branch.read(head, commitsDir)
+                    .getBranchName().equals(branch.getBranchName())) {
+                branch.write(head);
+            }
+        }
+    }
+
+    /** Copies every commit in the history of TIP, and every blob those
+     * commits track, that the destination does not have yet. The commits
+     * the destination already has are its "haves": the walk back from TIP
+     * stops at the first of them, since the destination then also has
+     * that commit's whole history, and each commit only needs the blobs
+     * it changed from its parent. Returns the number of objects copied.
+     * A commit in common shows that both sides name commits the same way.
+     * If there is none, nothing is copied unless the initial commits of
+     * both are content-addressed or both are not, since a repository
+     * that has been migrated shares no commits with one that has not.
+     * If the sending side fails, its error is thrown rather than the one
+     * the receiving side then gets from a pack that ends early.
+     * @param fromCommits the commits directory to copy from
+     * @param fromBlobs the blob directory to copy from
+     * @param toCommits the commits directory to copy to
+     * @param toBlobs the blob directory to copy to
+     * @param tip the commit whose history is wanted
+     * @param toHead the head commit of the destination
+     * @throws IOException */
+    public static int transfer(File fromCommits, File fromBlobs,
+                               File toCommits, File toBlobs, Commit tip,
+                               Commit toHead) throws IOException {
+        ArrayList<String> commits = new ArrayList<>();
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        Commit commit = tip;
+        Commit last = null;
+        while (commit != null
+                && !Utils.join(toCommits, commit.compID()).exists()) {
+            last = commit;
+            commits.add(commit.compID());
+            Commit parent = null;
+            if (commit.getParent() != null) {
+                parent = Commit.read(Utils.join(fromCommits,
+                        commit.getParent()));
+            }
+            Tree parentTree = parent == null ? Tree.EMPTY : parent.getBlobs();
+            for (TreeDiff.Change change: new TreeDiff(parentTree,
+                    commit.getBlobs())) {
+                String blob = change.getNewID();
+                if (blob != null && !Utils.join(toBlobs, blob).exists()) {
+                    blobs.add(blob);
+                }
+            }
+            commit = parent;
+        }
+        if (commit == null && last != null && last.isContentAddressed()
+                != isMigrated(toCommits, toHead)) {
+            throw new GitletException("Remote uses different commit IDs; "
+                    + "run migrate in both repositories.");
+        }
+        if (commits.isEmpty()) {
+            return 0;
+        }
+        Collections.reverse(commits);
+
+        PipedInputStream in = new PipedInputStream(PIPE);
+        PipedOutputStream out = new PipedOutputStream(in);
+        Exception[] failure = new Exception[1];
+        Thread sender = new Thread(() -> {
+            try (DataOutputStream stream = new DataOutputStream(
+                    new BufferedOutputStream(out, PIPE))) {
+                Pack.write(stream, fromCommits, fromBlobs, commits, blobs);
+            } catch (IOException | RuntimeException e) {
+                failure[0] = e;
+            }
+        });
+        sender.start();
+        int stored = 0;
+        Exception readFailure = null;
+        try (DataInputStream stream = new DataInputStream(
+                new BufferedInputStream(in, PIPE))) {
+            stored = Pack.read(stream, toCommits, toBlobs);
+        } catch (IOException | RuntimeException e) {
+            readFailure = e;
+        }
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Exception cause = failure[0] != null ? failure[0] : readFailure;
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause != null) {
+            throw (RuntimeException) cause;
+        }
+        return stored;
+    }
+
+    /** Returns whether the history of HEAD is named by the contents of
+     * its commits, which is so once the repository has been migrated or
+     * if it was made by this version of Gitlet. That is decided by the
+     * stored format of its initial commit, since older versions only
+     * ever wrote commits with old IDs: the walk back stops at the first
+     * of those.
+     * @param commits the commits directory
+     * @param head the commit to start from */
+    private static boolean isMigrated(File commits, Commit head) {
+        Commit commit = head;
+        while (commit.isContentAddressed() && commit.getParent() != null) {
+            commit = Commit.readHeader(Utils.join(commits,
+                    commit.getParent()));
+        }
+        return commit.isContentAddressed();
+    }
+
+    /** Size of the buffer between the sending and receiving ends. */
+    private static final int PIPE = 1 << 20;
+
+    /** Gitlet Directory of the remote. */
+    private File gitletDir;
+
+    /** Branch File of the remote. */
+    private File branchFile;
+
+    /** Head Pointer File of the remote. */
+    private File curBranch;
+
+    /** Blob Directory of the remote. */
+    private File blobDir;
+
+    /** Commits Directory of the remote. */
+    private File commitsDir;
+}
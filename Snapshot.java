@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/** Represents what is known about the files in the working directory:
+ * the size, modification time and blob ID of each file when it was last
+ * hashed. A file whose size and modification time have not changed since
+ * is not read again. A file modified less than SLOP before it was hashed
+ * could still change without its modification time changing, so it is
+ * always read again. A snapshot kept up to date by a watcher (see
+ * Watcher) also records which watcher and how much of its log of changed
+ * paths it reflects.
+ * @author Ryan Gomes
+ */
+public class Snapshot {
+
+    /** An empty snapshot. */
+    public Snapshot() {
+        entries = new ConcurrentSkipListMap<>();
+        watcher = "";
+    }
+
+    /** Returns the snapshot stored in FILE, or an empty one if FILE is
+     * missing or unreadable, since a snapshot can always be rebuilt.
+     * @param file the snapshot file */
+    public static Snapshot read(File file) {
+        Snapshot snapshot = new Snapshot();
+        if (!file.exists()) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return snapshot;
+            }
+            snapshot.watcher = Codec.readString(in);
+            snapshot.offset = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i += 1) {
+                String name = Codec.readString(in);
+                long length = in.readLong();
+                long modified = in.readLong();
+                snapshot.entries.put(name,
+                        new Entry(length, modified, Codec.readID(in)));
+            }
+        } catch (IOException e) {
+            return new Snapshot();
+        }
+        return snapshot;
+    }
+
+    /** Saves the snapshot to FILE.
+     * @param file the snapshot file */
+    public void write(File file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            Codec.writeString(out, watcher);
+            out.writeLong(offset);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry: entries.entrySet()) {
+                Codec.writeString(out, entry.getKey());
+                out.writeLong(entry.getValue().length);
+                out.writeLong(entry.getValue().modified);
+                Codec.writeID(out, entry.getValue().id);
+            }
+        } catch (IOException e) {
+            throw new GitletException("Internal error encoding snapshot.");
+        }
+        Utils.writeContents(file, bytes.toByteArray());
+    }
+
+    /** Returns the blob ID of the named file if it still has the given
+     * size and modification time, and null otherwise.
+     * @param name a file name
+     * @param length the file's size
+     * @param modified the file's modification time, in milliseconds */
+    public String lookup(String name, long length, long modified) {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.length != length
+                || entry.modified != modified) {
+            return null;
+        }
+        return entry.id;
+    }
+
+    /** Records that the named file, with the given size and modification
+     * time, has the given blob ID.
+     * @param name a file name
+     * @param length the file's size
+     * @param modified the file's modification time, in milliseconds
+     * @param id the file's blob ID */
+    public void put(String name, long length, long modified, String id) {
+        if (System.currentTimeMillis() - modified < SLOP) {
+            modified = -1;
+        }
+        entries.put(name, new Entry(length, modified, id));
+    }
+
+    /** Adds every file recorded in OTHER.
+     * @param other another snapshot */
+    public void putAll(Snapshot other) {
+        entries.putAll(other.entries);
+    }
+
+    /** Forgets the named file, or every file under it if it is a
+     * directory, and returns a snapshot of just those files.
+     * @param name a file or directory name */
+    public Snapshot removeUnder(String name) {
+        Snapshot removed = new Snapshot();
+        NavigableMap<String, Entry> under = entries.subMap(name, true,
+                name + "0", false);
+        for (Map.Entry<String, Entry> entry: under.entrySet()) {
+            if (entry.getKey().equals(name)
+                    || entry.getKey().startsWith(name + "/")) {
+                removed.entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        entries.keySet().removeAll(removed.entries.keySet());
+        return removed;
+    }
+
+    /** Returns the blob IDs of the recorded files, by name. */
+    public TreeMap<String, String> getIDs() {
+        TreeMap<String, String> ids = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry: entries.entrySet()) {
+            ids.put(entry.getKey(), entry.getValue().id);
+        }
+        return ids;
+    }
+
+    /** Return the watcher the snapshot is kept up to date by, or "". */
+    public String getWatcher() {
+        return watcher;
+    }
+
+    /** Return how much of the watcher's log the snapshot reflects. */
+    public long getOffset() {
+        return offset;
+    }
+
+    /** Records that the snapshot reflects the first OFFSET bytes of the
+     * log of the given watcher.
+     * @param id the watcher, or "" for none
+     * @param logOffset a position in the watcher's log */
+    public void setWatcher(String id, long logOffset) {
+        watcher = id;
+        offset = logOffset;
+    }
+
+    /** What is known about one file. */
+    private static class Entry {
+
+        /** A file's size, modification time and blob ID.
+         * @param length size of the file
+         * @param modified modification time of the file
+         * @param id blob ID of the file */
+        Entry(long length, long modified, String id) {
+            this.length = length;
+            this.modified = modified;
+            this.id = id;
+        }
+
+        /** Size of the file. */
+        private final long length;
+
+        /** Modification time of the file, in milliseconds, or -1 if it
+         * cannot be relied on. */
+        private final long modified;
+
+        /** Blob ID of the file. */
+        private final String id;
+    }
+
+    /** Marks the start of a stored snapshot. */
+    private static final int MAGIC = 0x474c5300;
+
+    /** Version of the stored snapshot format. */
+    private static final byte VERSION = 1;
+
+    /** How recently a file may have been modified, in milliseconds, for
+     * its modification time to be trusted. */
+    private static final long SLOP = 2000;
+
+    /** What is known about each file, by name. */
+    private ConcurrentSkipListMap<String, Entry> entries;
+
+    /** The watcher the snapshot is kept up to date by, or "". */
+    private String watcher;
+
+    /** How much of the watcher's log the snapshot reflects. */
+    private long offset;
+}
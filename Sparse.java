@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Represents the sparse-checkout patterns: the files of a commit that
+ * are kept in the working directory. A pattern that is a plain path
+ * includes that file, or everything under that directory; a pattern
+ * with glob characters (*, ?, [ or {) is matched against whole file
+ * names. With no patterns, every file is included. Commits still track
+ * every file, whether it is included or not.
+ * @author Ryan Gomes
+ */
+public class Sparse {
+
+    /** The given patterns.
+     * @param patterns the patterns */
+    public Sparse(List<String> patterns) {
+        for (String pattern: patterns) {
+            pattern = pattern.trim();
+            while (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            while (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            this.patterns.add(pattern);
+            if (isGlob(pattern)) {
+                globs.add(FileSystems.getDefault().getPathMatcher("glob:"
+                        + pattern));
+            } else {
+                prefixes.add(pattern);
+            }
+        }
+    }
+
+    /** Returns the patterns stored in FILE, which has one per line, or no
+     * patterns if FILE does not exist.
+     * @param file the sparse-checkout file */
+    public static Sparse read(File file) {
+        ArrayList<String> lines = new ArrayList<>();
+        if (file.isFile()) {
+            for (String line: Utils.readContentsAsString(file).split("\n")) {
+                lines.add(line);
+            }
+        }
+        return new Sparse(lines);
+    }
+
+    /** Saves the patterns to FILE.
+     * @param file the sparse-checkout file */
+    public void write(File file) {
+        StringBuilder text = new StringBuilder();
+        for (String pattern: patterns) {
+            text.append(pattern).append("\n");
+        }
+        Utils.writeContents(file, text.toString());
+    }
+
+    /** Return the patterns. */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /** Return whether there are any patterns. */
+    public boolean isEnabled() {
+        return !patterns.isEmpty();
+    }
+
+    /** Returns whether the file with the given name is kept in the
+     * working directory.
+     * @param name a file name */
+    public boolean includes(String name) {
+        if (!isEnabled()) {
+            return true;
+        }
+        for (String prefix: prefixes) {
+            if (name.equals(prefix) || name.startsWith(prefix + "/")) {
+                return true;
+            }
+        }
+        for (PathMatcher glob: globs) {
+            if (glob.matches(Paths.get(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether PATTERN has glob characters.
+     * @param pattern a pattern */
+    private static boolean isGlob(String pattern) {
+        for (char c: "*?[{".toCharArray()) {
+            if (pattern.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The patterns, as given. */
+    private ArrayList<String> patterns = new ArrayList<>();
+
+    /** The patterns that are plain paths. */
+    private ArrayList<String> prefixes = new ArrayList<>();
+
+    /** Matchers for the patterns that are globs. */
+    private ArrayList<PathMatcher> globs = new ArrayList<>();
+}
@@ -0,0 +1,223 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Represents the files tracked by a commit: file names sorted in an
+ * array, and the raw 20-byte blob ID of each file packed, in the same
+ * order, into a single byte array. Files are looked up by binary search.
+ * File names are interned, so a name tracked by many commits is held in
+ * memory only once. Trees are never changed once built.
+ * @author Ryan Gomes
+ */
+public class Tree {
+
+    /** A tree of the given files.
+     * @param names file names, sorted
+     * @param ids raw blob IDs, in the same order */
+    private Tree(String[] names, byte[] ids) {
+        this.names = names;
+        this.ids = ids;
+    }
+
+    /** Returns a tree of the given files.
+     * @param blobs blob IDs, by file name */
+    public static Tree of(Map<String, String> blobs) {
+        TreeMap<String, String> sorted = new TreeMap<>(blobs);
+        String[] names = new String[sorted.size()];
+        byte[] ids = new byte[sorted.size() * ID];
+        int i = 0;
+        for (Map.Entry<String, String> entry: sorted.entrySet()) {
+            names[i] = intern(entry.getKey());
+            putID(ids, i, entry.getValue());
+            i += 1;
+        }
+        return new Tree(names, ids);
+    }
+
+    /** Returns the number of files in the tree. */
+    public int size() {
+        return names.length;
+    }
+
+    /** Returns the name of the Ith file.
+     * @param i index of a file */
+    public String name(int i) {
+        return names[i];
+    }
+
+    /** Returns the blob ID of the Ith file.
+     * @param i index of a file */
+    public String id(int i) {
+        return Codec.toHex(ids, i * ID);
+    }
+
+    /** Returns the blob IDs of all the files, in order of file name. */
+    public List<String> blobIDs() {
+        ArrayList<String> result = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i += 1) {
+            result.add(id(i));
+        }
+        return result;
+    }
+
+    /** Returns the index of the file with the given name, or a negative
+     * number if the tree does not have it.
+     * @param name a file name */
+    public int indexOf(String name) {
+        return Arrays.binarySearch(names, name);
+    }
+
+    /** Returns whether the tree has the file with the given name.
+     * @param name a file name */
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /** Returns the blob ID of the file with the given name, or null if
+     * the tree does not have it.
+     * @param name a file name */
+    public String get(String name) {
+        int i = indexOf(name);
+        return i < 0 ? null : id(i);
+    }
+
+    /** Returns whether the Ith file of this tree has the same blob as the
+     * Jth file of OTHER.
+     * @param i index of a file in this tree
+     * @param other another tree
+     * @param j index of a file in OTHER */
+    public boolean sameID(int i, Tree other, int j) {
+        return Arrays.equals(ids, i * ID, (i + 1) * ID,
+                other.ids, j * ID, (j + 1) * ID);
+    }
+
+    /** Returns this tree with the given files added or replaced, and the
+     * given files removed. Both trees are walked once, in order.
+     * @param staged blob IDs of the files to add, by name
+     * @param removed names of the files to remove */
+    public Tree apply(TreeMap<String, String> staged, Set<String> removed) {
+        String[] newNames = new String[names.length + staged.size()];
+        byte[] newIDs = new byte[newNames.length * ID];
+        int n = 0;
+        int i = 0;
+        for (Map.Entry<String, String> entry: staged.entrySet()) {
+            String name = entry.getKey();
+            while (i < names.length && names[i].compareTo(name) < 0) {
+                n = keep(i, removed, newNames, newIDs, n);
+                i += 1;
+            }
+            if (i < names.length && names[i].equals(name)) {
+                i += 1;
+            }
+            newNames[n] = intern(name);
+            putID(newIDs, n, entry.getValue());
+            n += 1;
+        }
+        while (i < names.length) {
+            n = keep(i, removed, newNames, newIDs, n);
+            i += 1;
+        }
+        return new Tree(Arrays.copyOf(newNames, n),
+                Arrays.copyOf(newIDs, n * ID));
+    }
+
+    /** Copies the Ith file to position N of NEWNAMES and NEWIDS unless it
+     * is in REMOVED, and returns the next free position.
+     * @param i index of a file
+     * @param removed names of files to leave out
+     * @param newNames names being built
+     * @param newIDs blob IDs being built
+     * @param n next free position */
+    private int keep(int i, Set<String> removed, String[] newNames,
+                     byte[] newIDs, int n) {
+        if (removed.contains(names[i])) {
+            return n;
+        }
+        newNames[n] = names[i];
+        System.arraycopy(ids, i * ID, newIDs, n * ID, ID);
+        return n + 1;
+    }
+
+    /** Writes the tree as a count followed by each file's name, as in
+     * Codec.writeString, and raw blob ID, in order. The whole table is
+     * put together first and written at once.
+     * @param out the stream to write to
+     * @throws IOException */
+    public void write(DataOutput out) throws IOException {
+        byte[][] encoded = new byte[names.length][];
+        int size = Integer.BYTES;
+        for (int i = 0; i < names.length; i += 1) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + encoded[i].length + ID;
+        }
+        ByteBuffer table = ByteBuffer.allocate(size);
+        table.putInt(names.length);
+        for (int i = 0; i < names.length; i += 1) {
+            table.putInt(encoded[i].length).put(encoded[i]);
+            table.put(ids, i * ID, ID);
+        }
+        out.write(table.array());
+    }
+
+    /** Reads a tree written by write.
+     * @param in the stream to read from
+     * @throws IOException */
+    public static Tree read(DataInput in) throws IOException {
+        int size = in.readInt();
+        String[] names = new String[size];
+        byte[] ids = new byte[size * ID];
+        for (int i = 0; i < size; i += 1) {
+            names[i] = intern(Codec.readString(in));
+            in.readFully(ids, i * ID, ID);
+        }
+        return new Tree(names, ids);
+    }
+
+    /** Returns the shared copy of a file name.
+     * @param name a file name */
+    private static String intern(String name) {
+        String shared = NAMES.putIfAbsent(name, name);
+        return shared == null ? name : shared;
+    }
+
+    /** Stores a blob ID, given in hex, at position I of IDS.
+     * @param ids raw blob IDs
+     * @param i position
+     * @param hex a blob ID in hex */
+    private static void putID(byte[] ids, int i, String hex) {
+        for (int k = 0; k < ID; k += 1) {
+            ids[i * ID + k] = (byte) (Character.digit(hex.charAt(2 * k), HEX)
+                    << 4 | Character.digit(hex.charAt(2 * k + 1), HEX));
+        }
+    }
+
+    /** An empty tree. */
+    public static final Tree EMPTY = new Tree(new String[0], new byte[0]);
+
+    /** Number of bytes in a raw blob ID. */
+    private static final int ID = Codec.ID_LENGTH;
+
+    /** Radix of a hex digit. */
+    private static final int HEX = 16;
+
+    /** File names shared between trees. */
+    private static final ConcurrentHashMap<String, String> NAMES =
+            new ConcurrentHashMap<>();
+
+    /** File names, sorted. */
+    private final String[] names;
+
+    /** Raw blob IDs, in the same order as NAMES. */
+    private final byte[] ids;
+}
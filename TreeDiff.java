@@ -0,0 +1,154 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Represents the differences between two trees. Both trees are sorted by
+ * file name, so the differences are found by walking them side by side
+ * once, and are produced one at a time, in order of file name, as they
+ * are iterated over. Files with the same blob in both trees are skipped.
+ * @author Ryan Gomes
+ */
+public class TreeDiff implements Iterable<TreeDiff.Change> {
+
+    /** The kinds of difference between two trees. */
+    public enum Kind {
+        /** The file is only in the second tree. */
+        ADDED,
+        /** The file is only in the first tree. */
+        REMOVED,
+        /** The file is in both trees with different blobs. */
+        MODIFIED
+    }
+
+    /** The differences from BEFORE to AFTER.
+     * @param before the first tree
+     * @param after the second tree */
+    public TreeDiff(Tree before, Tree after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return new Walk();
+    }
+
+    /** One file that differs between the two trees. */
+    public static class Change {
+
+        /** A difference.
+         * @param kind kind of difference
+         * @param name name of the file
+         * @param oldID blob ID in the first tree, or null
+         * @param newID blob ID in the second tree, or null */
+        Change(Kind kind, String name, String oldID, String newID) {
+            this.kind = kind;
+            this.name = name;
+            this.oldID = oldID;
+            this.newID = newID;
+        }
+
+        /** Return the kind of difference. */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** Return the name of the file. */
+        public String getName() {
+            return name;
+        }
+
+        /** Return the file's blob ID in the first tree, or null if it is
+         * not there. */
+        public String getOldID() {
+            return oldID;
+        }
+
+        /** Return the file's blob ID in the second tree, or null if it is
+         * not there. */
+        public String getNewID() {
+            return newID;
+        }
+
+        /** The kind of difference. */
+        private final Kind kind;
+
+        /** The name of the file. */
+        private final String name;
+
+        /** The blob ID in the first tree. */
+        private final String oldID;
+
+        /** The blob ID in the second tree. */
+        private final String newID;
+    }
+
+    /** A single walk over both trees. */
+    private class Walk implements Iterator<Change> {
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Change result = next;
+            next = null;
+            return result;
+        }
+
+        /** Moves past the next difference and returns it, or returns null
+         * if there are none left. */
+        private Change advance() {
+            while (i < before.size() || j < after.size()) {
+                int cmp;
+                if (i == before.size()) {
+                    cmp = 1;
+                } else if (j == after.size()) {
+                    cmp = -1;
+                } else {
+                    cmp = before.name(i).compareTo(after.name(j));
+                }
+                if (cmp < 0) {
+                    i += 1;
+                    return new Change(Kind.REMOVED, before.name(i - 1),
+                            before.id(i - 1), null);
+                } else if (cmp > 0) {
+                    j += 1;
+                    return new Change(Kind.ADDED, after.name(j - 1),
+                            null, after.id(j - 1));
+                }
+                i += 1;
+                j += 1;
+                if (!before.sameID(i - 1, after, j - 1)) {
+                    return new Change(Kind.MODIFIED, before.name(i - 1),
+                            before.id(i - 1), after.id(j - 1));
+                }
+            }
+            return null;
+        }
+
+        /** Position in the first tree. */
+        private int i;
+
+        /** Position in the second tree. */
+        private int j;
+
+        /** The next difference, if already found. */
+        private Change next;
+    }
+
+    /** The first tree. */
+    private final Tree before;
+
+    /** The second tree. */
+    private final Tree after;
+}
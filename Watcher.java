@@ -0,0 +1,314 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** Represents a long-running process that watches the working directory
+ * and appends the name of every file or directory that changes to a log,
+ * one per line, so status only has to look again at those paths. If the
+ * operating system drops events, the line RESCAN is logged instead,
+ * meaning everything must be looked at again. Lines that are not names
+ * start with /, which a name never does.
+ *
+ * To make sure the log is up to date, a reader creates a cookie file in
+ * the watch directory, which is watched too; once the watcher has handled
+ * every event before the cookie's, it logs a line / followed by the
+ * cookie's name. The watcher is identified by its process ID and start
+ * time, kept in a pid file while it runs.
+ * @author Ryan Gomes
+ */
+public class Watcher {
+
+    /** A watcher of the working directory ROOT, keeping its files in
+     * WATCHDIR.
+     * @param root the working directory
+     * @param watchDir the watch directory */
+    public Watcher(File root, File watchDir) {
+        this.root = root;
+        this.tree = new WorkTree(root);
+        this.watchDir = watchDir;
+    }
+
+    /** Watches the working directory until the process is stopped.
+     * @throws IOException */
+    public void run() throws IOException {
+        watchDir.mkdirs();
+        File pidFile = Utils.join(watchDir, PID);
+        try (WatchService watch = FileSystems.getDefault().newWatchService();
+             BufferedWriter out = Files.newBufferedWriter(
+                     Utils.join(watchDir, LOG).toPath(),
+                     StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            service = watch;
+            log = out;
+            registerAll(root.toPath());
+            keys.put(watchDir.toPath().register(service, ENTRY_CREATE),
+                    watchDir.toPath());
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(pidFile::delete));
+            Utils.writeContents(pidFile, id(ProcessHandle.current()));
+            while (true) {
+                WatchKey key = service.take();
+                while (key != null) {
+                    handle(key);
+                    key = service.poll();
+                }
+                for (String cookie: cookies) {
+                    log.write(MARK + cookie + "\n");
+                }
+                cookies.clear();
+                log.flush();
+            }
+        } catch (InterruptedException e) {
+            pidFile.delete();
+        }
+    }
+
+    /** Returns the ID of the watcher running for WATCHDIR, or null if
+     * there is none.
+     * @param watchDir the watch directory */
+    public static String running(File watchDir) {
+        File pidFile = Utils.join(watchDir, PID);
+        if (!pidFile.isFile()) {
+            return null;
+        }
+        String id = Utils.readContentsAsString(pidFile);
+        try {
+            Optional<ProcessHandle> process = ProcessHandle.of(
+                    Long.parseLong(id.substring(0, id.indexOf(' '))));
+            if (process.isPresent() && process.get().isAlive()
+                    && id(process.get()).equals(id)) {
+                return id;
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /** Stops the watcher running for WATCHDIR, returning whether there
+     * was one.
+     * @param watchDir the watch directory */
+    public static boolean stop(File watchDir) {
+        String id = running(watchDir);
+        if (id == null) {
+            return false;
+        }
+        ProcessHandle.of(Long.parseLong(id.substring(0, id.indexOf(' '))))
+                .ifPresent(ProcessHandle::destroy);
+        Utils.join(watchDir, PID).delete();
+        return true;
+    }
+
+    /** Waits for the watcher to log every change made before this call,
+     * and returns the position in its log just after them, or -1 if the
+     * watcher did not answer in time. Only the log from FROM on is read.
+     * @param watchDir the watch directory
+     * @param from a position in the log */
+    public static long sync(File watchDir, long from) {
+        String token = COOKIE + System.nanoTime() + "-"
+                + ProcessHandle.current().pid();
+        File cookie = Utils.join(watchDir, token);
+        try {
+            cookie.createNewFile();
+            long deadline = System.currentTimeMillis() + SYNC_TIMEOUT;
+            while (System.currentTimeMillis() < deadline) {
+                String text = read(watchDir, from, -1);
+                String line = MARK + token + "\n";
+                int at = text.indexOf(line);
+                if (at >= 0) {
+                    String upTo = text.substring(0, at + line.length());
+                    return from
+                            + upTo.getBytes(StandardCharsets.UTF_8).length;
+                }
+                Thread.sleep(SYNC_POLL);
+            }
+        } catch (IOException | InterruptedException e) {
+            return -1;
+        } finally {
+            cookie.delete();
+        }
+        return -1;
+    }
+
+    /** Returns the paths logged between positions FROM and TO of the log,
+     * in the order logged.
+     * @param watchDir the watch directory
+     * @param from a position in the log
+     * @param to a later position in the log */
+    public static List<String> changes(File watchDir, long from, long to) {
+        ArrayList<String> result = new ArrayList<>();
+        String text;
+        try {
+            text = read(watchDir, from, to);
+        } catch (IOException e) {
+            result.add(RESCAN);
+            return result;
+        }
+        for (String line: text.split("\n")) {
+            if (!line.isEmpty()
+                    && (line.equals(RESCAN) || !line.startsWith(MARK))) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    /** Logs the events of one watched directory.
+     * @param key the directory's key
+     * @throws IOException */
+    private void handle(WatchKey key) throws IOException {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                log.write(RESCAN + "\n");
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (dir.equals(watchDir.toPath())) {
+                String name = child.getFileName().toString();
+                if (name.startsWith(COOKIE)) {
+                    cookies.add(name);
+                }
+                continue;
+            }
+            String name = tree.name(child);
+            if (name.equals(WorkTree.IGNORE_FILE)) {
+                tree = new WorkTree(root);
+                registerAll(root.toPath());
+                log.write(RESCAN + "\n");
+                continue;
+            }
+            boolean directory = Files.isDirectory(child,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (tree.isIgnoredPath(name, directory)) {
+                continue;
+            }
+            log.write(name + "\n");
+            if (event.kind() == ENTRY_CREATE && directory) {
+                registerAll(child);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    /** Watches START and every directory under it that is not ignored.
+     * @param start a directory in the working directory
+     * @throws IOException */
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                    Path dir, BasicFileAttributes attrs) throws IOException {
+                String name = tree.name(dir);
+                if (!name.isEmpty() && tree.isIgnored(name, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                keys.put(dir.register(service, ENTRY_CREATE, ENTRY_DELETE,
+                        ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file,
+                                                   IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /** Returns the ID of the watcher in PROCESS.
+     * @param process a process */
+    private static String id(ProcessHandle process) {
+        return process.pid() + " " + process.info().startInstant()
+                .map(Instant::toString).orElse("-");
+    }
+
+    /** Returns the log between positions FROM and TO, or from FROM to
+     * the end if TO is negative.
+     * @param watchDir the watch directory
+     * @param from a position in the log
+     * @param to a later position in the log, or -1
+     * @throws IOException */
+    private static String read(File watchDir, long from, long to)
+            throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(
+                Utils.join(watchDir, LOG), "r")) {
+            long end = to < 0 ? in.length() : Math.min(to, in.length());
+            byte[] bytes = new byte[(int) Math.max(0, end - from)];
+            in.seek(from);
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /** The line logged when everything must be looked at again. */
+    public static final String RESCAN = "/rescan";
+
+    /** Start of a line of the log that is not a name. */
+    private static final String MARK = "/";
+
+    /** Name of the file holding the running watcher's ID. */
+    private static final String PID = "pid";
+
+    /** Name of the log of changed paths. */
+    private static final String LOG = "dirty";
+
+    /** Start of the name of a cookie file. */
+    private static final String COOKIE = "cookie-";
+
+    /** How long to wait for the watcher to answer, in milliseconds. */
+    private static final long SYNC_TIMEOUT = 2000;
+
+    /** How often to check whether the watcher has answered, in
+     * milliseconds. */
+    private static final long SYNC_POLL = 5;
+
+    /** The working directory. */
+    private File root;
+
+    /** The working directory's names and ignored paths. */
+    private WorkTree tree;
+
+    /** The watch directory. */
+    private File watchDir;
+
+    /** The watch service, while running. */
+    private WatchService service;
+
+    /** The log of changed paths, while running. */
+    private BufferedWriter log;
+
+    /** The directory of each watch key. */
+    private HashMap<WatchKey, Path> keys = new HashMap<>();
+
+    /** Cookies seen since the log was last flushed. */
+    private ArrayList<String> cookies = new ArrayList<>();
+}
@@ -0,0 +1,270 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/** Represents the working directory. Files are named by their path
+ * relative to the working directory, with / between directories. Paths
+ * matching a pattern in the .gitletignore file, and the .gitlet directory
+ * itself, are skipped when walking the tree. A pattern without a / matches
+ * a file or directory name at any depth, one with a / matches a path from
+ * the top of the working directory, and one ending in / matches only
+ * directories.
+ * @author Ryan Gomes
+ */
+public class WorkTree {
+
+    /** The working directory rooted at ROOT.
+     * @param root the working directory */
+    public WorkTree(File root) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        File ignoreFile = Utils.join(root, IGNORE_FILE);
+        if (ignoreFile.isFile()) {
+            for (String line: Utils.readContentsAsString(ignoreFile)
+                    .split("\n")) {
+                addIgnore(line.trim());
+            }
+        }
+    }
+
+    /** Returns the name of the file at PATH.
+     * @param path a path in the working directory */
+    public String name(Path path) {
+        String name = root.relativize(path.toAbsolutePath().normalize())
+                .toString();
+        return name.replace(File.separatorChar, '/');
+    }
+
+    /** Returns the path of the file with the given name.
+     * @param name a file name */
+    public Path path(String name) {
+        return root.resolve(name.replace('/', File.separatorChar));
+    }
+
+    /** Returns whether the file or directory with the given name is
+     * ignored.
+     * @param name a file name
+     * @param directory whether it is a directory */
+    public boolean isIgnored(String name, boolean directory) {
+        Path full = FileSystems.getDefault().getPath(name);
+        Path last = full.getFileName();
+        if (last == null) {
+            return false;
+        }
+        if (last.toString().equals(".gitlet")) {
+            return true;
+        }
+        for (int i = 0; i < ignores.size(); i += 1) {
+            if (ignoreDirs.get(i) && !directory) {
+                continue;
+            }
+            Path target = ignoreAnchored.get(i) ? full : last;
+            if (ignores.get(i).matches(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns whether the file or directory with the given name, or
+     * any directory it is in, is ignored.
+     * @param name a file name
+     * @param directory whether it is a directory */
+    public boolean isIgnoredPath(String name, boolean directory) {
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+            if (isIgnored(name.substring(0, i), true)) {
+                return true;
+            }
+        }
+        return isIgnored(name, directory);
+    }
+
+    /** Hashes every file at or under START that is not ignored and whose
+     * name SELECT accepts, in parallel, storing each one's blob in BLOBDIR
+     * unless BLOBDIR is null. A file whose size and modification time
+     * match CACHE is not read, unless its blob still has to be stored.
+     * Returns a snapshot of the files hashed.
+     * @param start a file or directory in the working directory
+     * @param select which file names to hash
+     * @param blobDir the blob directory, or null
+     * @param cache what is already known about the files */
+    public Snapshot hash(Path start, Predicate<String> select,
+                         File blobDir, Snapshot cache) {
+        Snapshot found = new Snapshot();
+        try {
+            String name = name(start);
+            if (Files.isDirectory(start, LinkOption.NOFOLLOW_LINKS)) {
+                if (!name.isEmpty() && isIgnoredPath(name, true)) {
+                    return found;
+                }
+                ForkJoinPool.commonPool().invoke(
+                        new Scan(start, select, blobDir, cache, found));
+            } else if (Files.isRegularFile(start)
+                    && !isIgnoredPath(name, false) && select.test(name)) {
+                hashFile(start, blobDir, cache, found);
+            }
+        } catch (UncheckedIOException e) {
+            throw new GitletException(e.getCause().getMessage());
+        }
+        return found;
+    }
+
+    /** Hashes FILE into FOUND, as described for hash.
+     * @param file a file in the working directory
+     * @param blobDir the blob directory, or null
+     * @param cache what is already known about the files
+     * @param found the snapshot to record the file in */
+    private void hashFile(Path file, File blobDir, Snapshot cache,
+                          Snapshot found) {
+        String name = name(file);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long modified = attrs.lastModifiedTime().toMillis();
+        String id = cache.lookup(name, attrs.size(), modified);
+        if (id == null
+                || blobDir != null && !Utils.join(blobDir, id).exists()) {
+            Blob blob = new Blob(file.toFile());
+            if (blobDir != null) {
+                blob.save(blobDir);
+            }
+            id = blob.getShaID();
+        }
+        found.put(name, attrs.size(), modified, id);
+    }
+
+    /** Adds one line of the .gitletignore file.
+     * @param line a line of the file */
+    private void addIgnore(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        boolean directory = line.endsWith("/");
+        if (directory) {
+            line = line.substring(0, line.length() - 1);
+        }
+        if (line.startsWith("/")) {
+            line = line.substring(1);
+        }
+        ignoreAnchored.add(line.contains("/"));
+        ignoreDirs.add(directory);
+        ignores.add(FileSystems.getDefault().getPathMatcher("glob:" + line));
+    }
+
+    /** Hashes the files of one directory, and forks a task for each of
+     * its subdirectories. Files are hashed in batches of BATCH so that
+     * large directories are spread across threads too. */
+    private class Scan extends RecursiveAction {
+
+        /** A scan of DIR.
+         * @param dir the directory
+         * @param select which file names to hash
+         * @param blobDir the blob directory, or null
+         * @param cache what is already known about the files
+         * @param found the files found so far */
+        Scan(Path dir, Predicate<String> select, File blobDir,
+             Snapshot cache, Snapshot found) {
+            this.dir = dir;
+            this.select = select;
+            this.blobDir = blobDir;
+            this.cache = cache;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            ArrayList<RecursiveAction> tasks = new ArrayList<>();
+            ArrayList<Path> batch = new ArrayList<>();
+            try (DirectoryStream<Path> entries =
+                         Files.newDirectoryStream(dir)) {
+                for (Path entry: entries) {
+                    String name = name(entry);
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        if (!isIgnored(name, true)) {
+                            tasks.add(new Scan(entry, select, blobDir,
+                                    cache, found));
+                        }
+                    } else if (Files.isRegularFile(entry)
+                            && !isIgnored(name, false) && select.test(name)) {
+                        batch.add(entry);
+                        if (batch.size() == BATCH) {
+                            tasks.add(hashAll(batch));
+                            batch = new ArrayList<>();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            tasks.add(hashAll(batch));
+            invokeAll(tasks);
+        }
+
+        /** Returns a task hashing and storing the given files.
+         * @param files paths of the files */
+        private RecursiveAction hashAll(List<Path> files) {
+            return new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    for (Path file: files) {
+                        hashFile(file, blobDir, cache, found);
+                    }
+                }
+            };
+        }
+
+        /** Serialization version, which RecursiveAction requires, though
+         * scans are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** The directory scanned. */
+        private Path dir;
+
+        /** Which file names to hash. */
+        private Predicate<String> select;
+
+        /** The blob directory, or null. */
+        private File blobDir;
+
+        /** What is already known about the files. */
+        private Snapshot cache;
+
+        /** The files found so far. */
+        private Snapshot found;
+    }
+
+    /** Name of the file listing ignored paths. */
+    public static final String IGNORE_FILE = ".gitletignore";
+
+    /** Number of files hashed by a single task. */
+    private static final int BATCH = 64;
+
+    /** The absolute path of the working directory. */
+    private Path root;
+
+    /** Matchers for the ignored paths. */
+    private ArrayList<PathMatcher> ignores = new ArrayList<>();
+
+    /** Whether each ignore pattern matches only directories. */
+    private ArrayList<Boolean> ignoreDirs = new ArrayList<>();
+
+    /** Whether each ignore pattern matches whole paths rather than
+     * names. */
+    private ArrayList<Boolean> ignoreAnchored = new ArrayList<>();
+}